@@ -0,0 +1,156 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Check the heap of demographic events gives them back by date, then by
+ * slot, deaths first.
+ * 
+ * @author Antoine Dutot
+ */
+public class TestEventQueue {
+	/**
+	 * An event, ordered as the queue should order it.
+	 */
+	static class Event implements Comparable<Event> {
+		final int date, slot, generation;
+
+		final boolean death;
+
+		Event(int date, int slot, boolean death, int generation) {
+			this.date = date;
+			this.slot = slot;
+			this.death = death;
+			this.generation = generation;
+		}
+
+		public int compareTo(Event e) {
+			if (date != e.date)
+				return date < e.date ? -1 : 1;
+			if (slot != e.slot)
+				return slot < e.slot ? -1 : 1;
+			if (death != e.death)
+				return death ? -1 : 1;
+
+			return 0;
+		}
+	}
+
+	@Test
+	public void testOrder() {
+		Random random = new Random(1234);
+		DemographicManager.EventQueue queue = new DemographicManager.EventQueue();
+		ArrayList<Event> events = new ArrayList<Event>();
+
+		//
+		// Many events share their date, so that slots and kinds decide. The
+		// generation of an event must follow it in the heap.
+		//
+
+		for (int i = 0; i < 5000; i++) {
+			Event e = new Event(random.nextInt(200), random.nextInt(1000),
+					random.nextBoolean(), i);
+
+			events.add(e);
+			queue.push(e.date, e.slot, e.death, e.generation);
+		}
+
+		assertEquals(events.size(), queue.size());
+
+		Collections.sort(events);
+
+		for (int i = 0; i < events.size(); i++) {
+			Event e = events.get(i);
+
+			assertEquals(e.date, queue.peekDate());
+			assertEquals(e.slot, queue.peekSlot());
+			assertEquals(e.death, queue.peekIsDeath());
+
+			//
+			// Equal events may come in any order, their generations are only
+			// checked when the event is unique.
+			//
+
+			if ((i == 0 || e.compareTo(events.get(i - 1)) != 0)
+					&& (i + 1 == events.size() || e.compareTo(events
+							.get(i + 1)) != 0))
+				assertEquals(e.generation, queue.peekGeneration());
+
+			queue.pop();
+		}
+
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testInterleaved() {
+		Random random = new Random(4321);
+		DemographicManager.EventQueue queue = new DemographicManager.EventQueue();
+		ArrayList<Event> pending = new ArrayList<Event>();
+		int date = 0;
+
+		//
+		// As in a run, events are pushed at later dates while the earliest
+		// ones are popped.
+		//
+
+		for (int step = 0; step < 2000; step++) {
+			for (int i = random.nextInt(4); i > 0; i--) {
+				Event e = new Event(date + 1 + random.nextInt(50),
+						random.nextInt(100), random.nextBoolean(), step);
+
+				pending.add(e);
+				queue.push(e.date, e.slot, e.death, e.generation);
+			}
+
+			Collections.sort(pending);
+
+			while (queue.size() > 0 && queue.peekDate() <= date) {
+				Event e = pending.remove(0);
+
+				assertEquals(e.date, queue.peekDate());
+				assertEquals(e.slot, queue.peekSlot());
+				assertEquals(e.death, queue.peekIsDeath());
+
+				queue.pop();
+			}
+
+			assertEquals(pending.size(), queue.size());
+			date++;
+		}
+	}
+}
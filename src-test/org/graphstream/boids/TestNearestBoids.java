@@ -0,0 +1,145 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the bounded heap of {@link NearestBoids} keeps the nearest boids
+ * offered, against a sort.
+ * 
+ * @author Antoine Dutot
+ */
+public class TestNearestBoids {
+	BoidGraph ctx;
+
+	List<Boid> boids;
+
+	Random random;
+
+	@Before
+	public void setUp() {
+		ctx = new BoidGraph();
+		ctx.setRandomSeed(1234);
+		boids = ctx.addBoids(ctx.getOrCreateSpecies("test"), 500);
+		random = new Random(4321);
+	}
+
+	@Test
+	public void testNearest() {
+		NearestBoids nearest = new NearestBoids();
+
+		for (int k : new int[] { 1, 2, 3, 10, 64, 499, 500, 1000 }) {
+			HashMap<Boid, Double> d2 = new HashMap<Boid, Double>();
+			double[] sorted = new double[boids.size()];
+
+			nearest.reset(k);
+
+			for (int i = 0; i < boids.size(); i++) {
+				Boid b = boids.get(i);
+				double d = random.nextDouble();
+
+				d2.put(b, d);
+				sorted[i] = d;
+				nearest.offer(b, d);
+				checkHeap(nearest);
+			}
+
+			Arrays.sort(sorted);
+
+			int n = Math.min(k, boids.size());
+			ArrayList<Boid> found = new ArrayList<Boid>();
+			nearest.addTo(found);
+
+			assertEquals(n, nearest.size());
+			assertEquals(n, new HashSet<Boid>(found).size());
+
+			for (Boid b : found)
+				assertTrue(d2.get(b) <= sorted[n - 1]);
+
+			if (k <= boids.size())
+				assertEquals(sorted[n - 1], nearest.getRadius2(), 0);
+			else
+				assertEquals(Double.POSITIVE_INFINITY, nearest.getRadius2(), 0);
+		}
+	}
+
+	@Test
+	public void testOffer() {
+		NearestBoids nearest = new NearestBoids();
+
+		nearest.reset(2);
+
+		assertTrue(nearest.offer(boids.get(0), 4));
+		assertTrue(nearest.offer(boids.get(1), 2));
+		assertEquals(4, nearest.getRadius2(), 0);
+		assertFalse(nearest.offer(boids.get(2), 4));
+		assertFalse(nearest.offer(boids.get(3), 5));
+		assertTrue(nearest.offer(boids.get(4), 1));
+		assertEquals(2, nearest.getRadius2(), 0);
+
+		ArrayList<Boid> found = new ArrayList<Boid>();
+		nearest.addTo(found);
+
+		assertEquals(
+				new HashSet<Boid>(Arrays.asList(boids.get(1), boids.get(4))),
+				new HashSet<Boid>(found));
+
+		//
+		// A reset empties the heap, and nothing is kept with k = 0.
+		//
+
+		nearest.reset(0);
+
+		assertEquals(0, nearest.size());
+		assertEquals(0, nearest.getRadius2(), 0);
+		assertFalse(nearest.offer(boids.get(0), 0));
+		assertEquals(0, nearest.size());
+	}
+
+	/**
+	 * Each boid of the heap is at least as far as its children.
+	 */
+	protected static void checkHeap(NearestBoids nearest) {
+		for (int i = 1; i < nearest.size; i++)
+			assertTrue(nearest.d2[(i - 1) / 2] >= nearest.d2[i]);
+	}
+}
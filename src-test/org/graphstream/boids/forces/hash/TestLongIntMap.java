@@ -0,0 +1,96 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.hash;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Check {@link LongIntMap} against a hash map.
+ * 
+ * @author Antoine Dutot
+ */
+public class TestLongIntMap {
+	@Test
+	public void testPutGet() {
+		Random random = new Random(1234);
+		LongIntMap map = new LongIntMap(4);
+		HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+
+		//
+		// Keys are drawn in a small range so that many are put twice, and
+		// the map grows several times from its small capacity.
+		//
+
+		for (int i = 0; i < 20000; i++) {
+			long key = (long) random.nextInt(10000) << random.nextInt(24);
+			int value = random.nextInt();
+
+			map.put(key, value);
+			expected.put(key, value);
+		}
+
+		assertEquals(expected.size(), map.size());
+
+		for (Map.Entry<Long, Integer> e : expected.entrySet())
+			assertEquals((int) e.getValue(), map.get(e.getKey(), -1));
+
+		for (int i = 0; i < 20000; i++) {
+			long key = random.nextLong() & Long.MAX_VALUE;
+
+			if (!expected.containsKey(key))
+				assertEquals(-1, map.get(key, -1));
+		}
+	}
+
+	@Test
+	public void testClear() {
+		LongIntMap map = new LongIntMap();
+
+		for (long key = 0; key < 1000; key++)
+			map.put(key * 31, (int) key);
+
+		map.clear();
+
+		assertEquals(0, map.size());
+
+		for (long key = 0; key < 1000; key++)
+			assertEquals(-1, map.get(key * 31, -1));
+
+		map.put(62, 7);
+
+		assertEquals(1, map.size());
+		assertEquals(7, map.get(62, -1));
+	}
+}
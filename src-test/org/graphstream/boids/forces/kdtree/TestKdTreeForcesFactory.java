@@ -0,0 +1,223 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.kdtree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.BoidSpecies;
+import org.graphstream.boids.NearestBoids;
+import org.junit.Before;
+import org.junit.Test;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Compare the queries of the kd-tree with a linear scan of the boids.
+ * 
+ * @author Antoine Dutot
+ */
+public class TestKdTreeForcesFactory {
+	static final int BOIDS = 2000;
+
+	static final double RADIUS = 0.2;
+
+	BoidGraph ctx;
+
+	KdTreeForcesFactory factory;
+
+	Random random;
+
+	@Before
+	public void setUp() {
+		ctx = new BoidGraph();
+		ctx.setRandomSeed(1234);
+
+		factory = new KdTreeForcesFactory(ctx, true);
+		ctx.setForcesFactory(factory);
+
+		BoidSpecies species = ctx.getOrCreateSpecies("test");
+		species.setViewZone(RADIUS);
+		ctx.addBoids(species, BOIDS);
+
+		factory.build();
+		random = new Random(4321);
+	}
+
+	@Test
+	public void testRadiusQuery() {
+		ArrayList<Boid> found = new ArrayList<Boid>();
+
+		for (int i = 0; i < 500; i++) {
+			Point3 center = randomPoint();
+			double radius = random.nextDouble() * 0.5;
+
+			found.clear();
+			factory.radiusQuery(center, radius, found);
+
+			assertEquals(found.size(), new HashSet<Boid>(found).size());
+			assertEquals(inCone(center, null, radius, -2),
+					new HashSet<Boid>(found));
+		}
+	}
+
+	@Test
+	public void testConeQuery() {
+		ArrayList<Boid> found = new ArrayList<Boid>();
+
+		for (int i = 0; i < 500; i++) {
+			Point3 center = randomPoint();
+			Vector3 dir = new Vector3(random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			double radius = random.nextDouble() * 0.5;
+			double cosAngle = random.nextDouble() * 2 - 1;
+
+			found.clear();
+			factory.coneQuery(center, dir, radius, cosAngle, found);
+
+			assertEquals(found.size(), new HashSet<Boid>(found).size());
+			assertEquals(inCone(center, dir, radius, cosAngle),
+					new HashSet<Boid>(found));
+		}
+	}
+
+	@Test
+	public void testNearest() {
+		NearestBoids nearest = new NearestBoids();
+
+		for (int k : new int[] { 1, 7, 30 }) {
+			for (Boid b : ctx.<Boid> getEachNode()) {
+				nearest.reset(k);
+				factory.collectNeighborhood(b, nearest);
+
+				ArrayList<Boid> found = new ArrayList<Boid>();
+				nearest.addTo(found);
+
+				double[] expected = distances(b, visible(b));
+				Arrays.sort(expected);
+				expected = Arrays.copyOf(expected,
+						Math.min(k, expected.length));
+
+				double[] actual = distances(b, found);
+				Arrays.sort(actual);
+
+				assertEquals(expected.length, actual.length);
+
+				for (int i = 0; i < expected.length; i++)
+					assertEquals(expected[i], actual[i], 0);
+			}
+		}
+	}
+
+	protected Point3 randomPoint() {
+		return new Point3(random.nextDouble() * 2.2 - 1.1,
+				random.nextDouble() * 2.2 - 1.1,
+				random.nextDouble() * 2.2 - 1.1);
+	}
+
+	/**
+	 * The boids in a cone, by a linear scan, with the same test as the tree.
+	 * A null direction accepts every angle.
+	 */
+	protected HashSet<Boid> inCone(Point3 center, Vector3 dir, double radius,
+			double cosAngle) {
+		HashSet<Boid> result = new HashSet<Boid>();
+		double dx = 0, dy = 0, dz = 0;
+
+		if (dir != null) {
+			dx = dir.data[0];
+			dy = dir.data[1];
+			dz = dir.data[2];
+
+			double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+			dx /= len;
+			dy /= len;
+			dz /= len;
+		}
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			Point3 p = b.getPosition();
+			double vx = p.x - center.x, vy = p.y - center.y, vz = p.z
+					- center.z;
+			double d2 = vx * vx + vy * vy + vz * vz;
+
+			if (d2 > radius * radius)
+				continue;
+
+			if (dir != null && d2 > 0
+					&& (vx * dx + vy * dy + vz * dz) / Math.sqrt(d2) <= cosAngle)
+				continue;
+
+			result.add(b);
+		}
+
+		return result;
+	}
+
+	/**
+	 * The boids visible from a source in its view zone, by a linear scan.
+	 */
+	protected ArrayList<Boid> visible(Boid source) {
+		ArrayList<Boid> visible = new ArrayList<Boid>();
+		BoidForces forces = source.getForces();
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			if (b != source
+					&& distance2(b, source.getPosition()) <= RADIUS * RADIUS
+					&& forces.isVisible(source, b))
+				visible.add(b);
+		}
+
+		return visible;
+	}
+
+	protected static double[] distances(Boid source, ArrayList<Boid> boids) {
+		double[] d2 = new double[boids.size()];
+
+		for (int i = 0; i < d2.length; i++)
+			d2[i] = distance2(boids.get(i), source.getPosition());
+
+		return d2;
+	}
+
+	protected static double distance2(Boid b, Point3 p) {
+		Point3 q = b.getPosition();
+		double ux = q.x - p.x, uy = q.y - p.y, uz = q.z - p.z;
+
+		return ux * ux + uy * uy + uz * uz;
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.ntree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.BoidSpecies;
+import org.graphstream.boids.NearestBoids;
+import org.junit.Before;
+import org.junit.Test;
+import org.miv.pherd.geom.Point3;
+
+/**
+ * Compare the queries of the loose n-tree with a linear scan of the boids.
+ * 
+ * @author Antoine Dutot
+ */
+public class TestLooseNTree {
+	static final int BOIDS = 1000;
+
+	static final double RADIUS = 0.2;
+
+	BoidGraph ctx;
+
+	LooseNTree tree;
+
+	Random random;
+
+	@Before
+	public void setUp() {
+		ctx = new BoidGraph();
+		ctx.setRandomSeed(1234);
+
+		LooseNTreeForcesFactory factory = new LooseNTreeForcesFactory(ctx);
+		ctx.setForcesFactory(factory);
+
+		BoidSpecies species = ctx.getOrCreateSpecies("test");
+		species.setViewZone(RADIUS);
+		ctx.addBoids(species, BOIDS);
+
+		tree = factory.getTree();
+		random = new Random(4321);
+	}
+
+	@Test
+	public void testSearch() {
+		checkSearch();
+	}
+
+	@Test
+	public void testSearchAfterMoves() {
+		//
+		// Some boids leave the space, they stay in the root.
+		//
+
+		for (Boid b : ctx.<Boid> getEachNode())
+			b.setPosition(random.nextDouble() * 2.4 - 1.2,
+					random.nextDouble() * 2.4 - 1.2, 0);
+
+		checkSearch();
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			Point3 p = b.getPosition();
+			b.setPosition(p.x + random.nextGaussian() * 0.01, p.y
+					+ random.nextGaussian() * 0.01, 0);
+		}
+
+		checkSearch();
+	}
+
+	@Test
+	public void testSearchAfterRemovals() {
+		ArrayList<Boid> removed = new ArrayList<Boid>();
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			if (random.nextBoolean())
+				removed.add(b);
+		}
+
+		ctx.removeBoids(removed);
+
+		assertEquals(BOIDS - removed.size(), ctx.getNodeCount());
+		checkSearch();
+	}
+
+	@Test
+	public void testNearest() {
+		NearestBoids nearest = new NearestBoids();
+
+		for (int k : new int[] { 0, 1, 5, 20, BOIDS }) {
+			for (Boid b : ctx.<Boid> getEachNode()) {
+				nearest.reset(k);
+				tree.collect(b, b.getPosition(), RADIUS, nearest);
+
+				ArrayList<Boid> found = new ArrayList<Boid>();
+				nearest.addTo(found);
+
+				double[] expected = distances(b, visible(b, RADIUS));
+				Arrays.sort(expected);
+				expected = Arrays.copyOf(expected,
+						Math.min(k, expected.length));
+
+				double[] actual = distances(b, found);
+				Arrays.sort(actual);
+
+				assertEquals(expected.length, actual.length);
+
+				for (int i = 0; i < expected.length; i++)
+					assertEquals(expected[i], actual[i], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testPairs() {
+		final HashSet<String> found = new HashSet<String>();
+		final int[] visits = new int[1];
+
+		tree.pairs(RADIUS, new LooseNTree.PairVisitor() {
+			public void pair(Boid a, Boid b, double d2) {
+				found.add(key(a, b));
+				visits[0]++;
+			}
+		});
+
+		HashSet<String> expected = new HashSet<String>();
+		ArrayList<Boid> boids = new ArrayList<Boid>();
+
+		for (Boid b : ctx.<Boid> getEachNode())
+			boids.add(b);
+
+		for (int i = 0; i < boids.size(); i++) {
+			for (int j = i + 1; j < boids.size(); j++) {
+				if (distance2(boids.get(i), boids.get(j).getPosition()) <= RADIUS
+						* RADIUS)
+					expected.add(key(boids.get(i), boids.get(j)));
+			}
+		}
+
+		assertEquals(expected, found);
+		assertEquals(found.size(), visits[0]);
+	}
+
+	/**
+	 * Search around each boid and compare with the linear scan.
+	 */
+	protected void checkSearch() {
+		ArrayList<Boid> found = new ArrayList<Boid>();
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			found.clear();
+			tree.search(b, b.getPosition(), RADIUS, found);
+
+			assertEquals(found.size(), new HashSet<Boid>(found).size());
+			assertEquals(new HashSet<Boid>(visible(b, RADIUS)),
+					new HashSet<Boid>(found));
+		}
+
+		assertTrue(ctx.getNodeCount() > 0);
+	}
+
+	/**
+	 * The boids visible from a source at most at a given distance, by a
+	 * linear scan.
+	 */
+	protected ArrayList<Boid> visible(Boid source, double radius) {
+		ArrayList<Boid> visible = new ArrayList<Boid>();
+		BoidForces forces = source.getForces();
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			if (b != source
+					&& distance2(b, source.getPosition()) <= radius * radius
+					&& forces.isVisible(source, b))
+				visible.add(b);
+		}
+
+		return visible;
+	}
+
+	protected static double[] distances(Boid source, ArrayList<Boid> boids) {
+		double[] d2 = new double[boids.size()];
+
+		for (int i = 0; i < d2.length; i++)
+			d2[i] = distance2(boids.get(i), source.getPosition());
+
+		return d2;
+	}
+
+	protected static double distance2(Boid b, Point3 p) {
+		Point3 q = b.getPosition();
+		double ux = q.x - p.x, uy = q.y - p.y, uz = q.z - p.z;
+
+		return ux * ux + uy * uy + uz * uz;
+	}
+
+	protected static String key(Boid a, Boid b) {
+		return a.getId().compareTo(b.getId()) < 0 ? a.getId() + "|"
+				+ b.getId() : b.getId() + "|" + a.getId();
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch the steps of a simulation to a {@link BoidSnapshotListener} running
+ * in its own thread.
+ * 
+ * <p>
+ * At the end of each step, an immutable {@link BoidGraphSnapshot} is put in a
+ * bounded queue read by the listener thread, so that a slow listener does not
+ * slow down the simulation. When the queue is full, the {@link OverflowPolicy}
+ * decides what happens. The snapshot is shared by all the asynchronous
+ * listeners of the graph, and is also the one the graph publishes.
+ * </p>
+ * 
+ * <p>
+ * Metrics allow to follow how far behind the simulation the listener is.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class AsyncBoidGraphListener implements BoidGraphListener {
+	/**
+	 * What to do when a step occurs and the queue is full.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * Wait for the listener, slowing down the simulation.
+		 */
+		BLOCK,
+		/**
+		 * Drop the oldest pending snapshot.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Drop all the pending snapshots, the listener gets the latest one.
+		 */
+		COALESCE
+	}
+
+	/**
+	 * Used to name threads.
+	 */
+	private static int threadCount = 0;
+
+	/**
+	 * The simulation.
+	 */
+	protected BoidGraph ctx;
+
+	/**
+	 * The listener.
+	 */
+	protected BoidSnapshotListener listener;
+
+	/**
+	 * Pending snapshots.
+	 */
+	protected ArrayBlockingQueue<BoidGraphSnapshot> queue;
+
+	/**
+	 * What to do when the queue is full.
+	 */
+	protected OverflowPolicy policy;
+
+	/**
+	 * Thread running the listener.
+	 */
+	protected Thread thread;
+
+	/**
+	 * How long a blocked step waits before checking the listener thread is
+	 * still alive, in milliseconds.
+	 */
+	protected static final long BLOCK_CHECK_PERIOD = 100;
+
+	/**
+	 * False once closed, or once the listener thread died.
+	 */
+	protected volatile boolean running;
+
+	/**
+	 * Number of snapshots given to the queue.
+	 */
+	protected volatile long submitted;
+
+	/**
+	 * Number of snapshots delivered to the listener.
+	 */
+	protected volatile long delivered;
+
+	/**
+	 * Number of snapshots dropped because of overflow.
+	 */
+	protected volatile long dropped;
+
+	/**
+	 * Step of the last submitted snapshot.
+	 */
+	protected volatile double lastSubmittedStep;
+
+	/**
+	 * Step of the last delivered snapshot.
+	 */
+	protected volatile double lastDeliveredStep;
+
+	/**
+	 * Greatest lag observed, in steps.
+	 */
+	protected volatile double maxLag;
+
+	/**
+	 * New asynchronous dispatch. Use
+	 * {@link BoidGraph#addAsyncListener(BoidSnapshotListener, int, OverflowPolicy)}
+	 * rather than this constructor.
+	 * 
+	 * @param ctx
+	 *            The simulation.
+	 * @param listener
+	 *            The listener.
+	 * @param capacity
+	 *            Maximum number of pending snapshots.
+	 * @param policy
+	 *            What to do when the queue is full.
+	 */
+	public AsyncBoidGraphListener(BoidGraph ctx,
+			BoidSnapshotListener listener, int capacity, OverflowPolicy policy) {
+		this.ctx = ctx;
+		this.listener = listener;
+		this.queue = new ArrayBlockingQueue<BoidGraphSnapshot>(capacity);
+		this.policy = policy;
+		this.running = true;
+
+		synchronized (AsyncBoidGraphListener.class) {
+			thread = new Thread(new Dispatcher(), "boids-listener-"
+					+ threadCount++);
+		}
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * The listener running in the thread.
+	 */
+	public BoidSnapshotListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Number of snapshots given to the queue.
+	 */
+	public long getSubmittedCount() {
+		return submitted;
+	}
+
+	/**
+	 * Number of snapshots the listener received.
+	 */
+	public long getDeliveredCount() {
+		return delivered;
+	}
+
+	/**
+	 * Number of snapshots dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * Number of snapshots waiting in the queue.
+	 */
+	public int getPendingCount() {
+		return queue.size();
+	}
+
+	/**
+	 * Number of steps between the last snapshot submitted and the last
+	 * snapshot received by the listener.
+	 */
+	public double getLag() {
+		return lastSubmittedStep - lastDeliveredStep;
+	}
+
+	/**
+	 * Greatest lag observed since the creation of the dispatch.
+	 */
+	public double getMaxLag() {
+		return maxLag;
+	}
+
+	/**
+	 * Is the listener thread still running ? It stops when closed, or when
+	 * the listener throws an error.
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Stop the thread. Pending snapshots are not delivered.
+	 */
+	public void close() {
+		running = false;
+		queue.clear();
+		thread.interrupt();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidGraphListener#step(double)
+	 */
+	public void step(double time) {
+		//
+		// Snapshots are submitted by the graph once the boids moved, see
+		// submit().
+		//
+	}
+
+	/**
+	 * Give the snapshot of a step to the listener thread. This is called by
+	 * the graph at the end of each step.
+	 * 
+	 * @param snapshot
+	 *            The snapshot of the step.
+	 */
+	protected void submit(BoidGraphSnapshot snapshot) {
+		if (!running)
+			return;
+
+		switch (policy) {
+		case BLOCK:
+			//
+			// The wait is bounded so that a listener thread that died does
+			// not block the simulation forever.
+			//
+
+			try {
+				while (!queue.offer(snapshot, BLOCK_CHECK_PERIOD,
+						TimeUnit.MILLISECONDS)) {
+					if (!running)
+						return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			break;
+		case DROP_OLDEST:
+			while (!queue.offer(snapshot)) {
+				if (queue.poll() != null)
+					dropped++;
+			}
+			break;
+		case COALESCE:
+			while (!queue.offer(snapshot)) {
+				while (queue.poll() != null)
+					dropped++;
+			}
+			break;
+		}
+
+		submitted++;
+		lastSubmittedStep = snapshot.getStep();
+		maxLag = Math.max(maxLag, getLag());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidGraphListener#boidAdded(org.graphstream.boids
+	 * .Boid)
+	 */
+	public void boidAdded(Boid boid) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidGraphListener#boidDeleted(org.graphstream.boids
+	 * .Boid)
+	 */
+	public void boidDeleted(Boid boid) {
+	}
+
+	private class Dispatcher implements Runnable {
+		public void run() {
+			//
+			// Whatever the way the loop ends, an interrupt by close() or an
+			// error thrown by the listener, the dispatch is marked as dead so
+			// that steps stop feeding, or waiting for, the queue.
+			//
+
+			try {
+				while (running) {
+					BoidGraphSnapshot snapshot;
+
+					try {
+						snapshot = queue.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+
+					try {
+						listener.step(snapshot);
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+					}
+
+					delivered++;
+					lastDeliveredStep = snapshot.getStep();
+				}
+			} finally {
+				running = false;
+				queue.clear();
+			}
+		}
+	}
+}
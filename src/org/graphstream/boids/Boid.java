@@ -64,6 +64,17 @@ public class Boid extends AdjacencyListNode {
 	/** The set of forces acting on this particle. */
 	protected BoidForces forces;
 
+	/**
+	 * Dense index of the boid, -1 when not in the graph.
+	 */
+	int handle = -1;
+
+	/**
+	 * Position of the boid in the list of its species, -1 when not
+	 * registered.
+	 */
+	int speciesSlot = -1;
+
 	/**
 	 * New boid as a node in the given graph.
 	 * 
@@ -93,6 +104,17 @@ public class Boid extends AdjacencyListNode {
 		return forces.getPosition();
 	}
 
+	/**
+	 * Dense index of the boid in the graph. Handles are allocated from zero
+	 * and reused once a boid is removed, so that they can index arrays. See
+	 * {@link BoidGraph#getBoid(int)}.
+	 * 
+	 * @return The handle, or -1 if the boid is not in the graph.
+	 */
+	public int getHandle() {
+		return handle;
+	}
+
 	/**
 	 * Set of parameters used by this boid group.
 	 */
@@ -100,6 +122,15 @@ public class Boid extends AdjacencyListNode {
 		return species;
 	}
 
+	/**
+	 * Prepare a boid taken from the pool of its species to be added again to
+	 * the graph. The boid is not in the graph, so its attributes are removed
+	 * without sending events.
+	 */
+	void recycle() {
+		clearAttributesWithNoEvent();
+	}
+
 	public void setForces(BoidForces forces) {
 		this.forces = forces;
 	}
@@ -147,7 +178,7 @@ public class Boid extends AdjacencyListNode {
 
 			for (Boid b2 : boids) {
 				if (getEdgeBetween(b2) == null
-						&& getDegree() < species.maxNeighborhood) {
+						&& getDegree() < species.getParameters().maxNeighborhood) {
 					if (getGraph().getNode(b2.getId()) != null)
 						getGraph().addEdge(getEdgeId(this, b2), this, b2);
 					else
@@ -165,10 +196,11 @@ public class Boid extends AdjacencyListNode {
 	 * Compute the edge identifier between two boids knowing their individual
 	 * identifiers. This method ensures the identifiers are always in the same
 	 * order so that we get the same edge whatever the order of the parameters
-	 * b1 and b2.
+	 * b1 and b2. The order only depends on the identifiers, so that the same
+	 * run always produces the same edges.
 	 */
 	public static final String getEdgeId(Boid b1, Boid b2) {
-		if (b1.hashCode() > b2.hashCode()) {
+		if (b1.getId().compareTo(b2.getId()) > 0) {
 			Boid t = b1;
 			b1 = b2;
 			b2 = t;
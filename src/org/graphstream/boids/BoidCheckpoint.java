@@ -0,0 +1,462 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.graphstream.graph.Edge;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Save and restore the complete state of a boid simulation.
+ * 
+ * <p>
+ * A checkpoint contains the simulation parameters, the parameters of each
+ * species and of their interactions, every boid with its position, direction
+ * and demographic dates, the
+ * interaction edges, the current step and the state of the random number
+ * generator. Restoring a checkpoint therefore allows to continue a simulation
+ * exactly where it was saved, without having to simulate the warm-up again.
+ * </p>
+ * 
+ * <p>
+ * Restoration does not go through {@link Boid#setPosition(double, double, double)}
+ * once boids are in the forces system. The forces factory is stopped while
+ * boids are created, and started again once all of them are placed, so that
+ * the spatial index is built in one pass.
+ * </p>
+ * 
+ * <p>
+ * Demographic probability functions are code rather than state, so they are
+ * not saved. Species already present in the graph under the same name are
+ * reused when restoring, keeping their probability functions.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class BoidCheckpoint {
+	/**
+	 * Magic number at the start of every checkpoint ("GSBC").
+	 */
+	public static final int MAGIC = 0x47534243;
+
+	/**
+	 * Version of the checkpoint format written by this class.
+	 */
+	public static final int VERSION = 3;
+
+	/**
+	 * Write the whole state of a simulation.
+	 * 
+	 * @param ctx
+	 *            The simulation to save.
+	 * @param out
+	 *            Where to write the checkpoint. The stream is not closed.
+	 * @throws IOException
+	 *             if something wrong happens with io.
+	 */
+	public static void write(BoidGraph ctx, OutputStream out)
+			throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+
+		//
+		// Global parameters.
+		//
+
+		data.writeInt(ctx.maxSteps);
+		data.writeDouble(ctx.area);
+		data.writeInt(ctx.sleepTime);
+		data.writeBoolean(ctx.storeForcesAttributes);
+		data.writeBoolean(ctx.normalizeMode);
+		data.writeLong(ctx.randomSeed);
+		data.writeInt(ctx.step);
+		data.writeUTF(ctx.forcesFactory.getClass().getName());
+
+		//
+		// Species.
+		//
+
+		BoidSpecies.Parameter[] params = BoidSpecies.Parameter.values();
+
+		data.writeInt(ctx.boidSpecies.size());
+
+		for (BoidSpecies species : ctx.boidSpecies.values()) {
+			data.writeUTF(species.getName());
+			data.writeUTF(species.getClass().getName());
+			data.writeInt(params.length);
+
+			for (BoidSpecies.Parameter p : params) {
+				data.writeUTF(p.name());
+				data.writeUTF(species.get(p));
+			}
+
+			data.writeInt(species.getColor().getRGB());
+			data.writeLong(species.timestamp);
+			data.writeInt(species.currentIndex);
+			data.writeInt(species.pop.getCurrentDate());
+		}
+
+		//
+		// Interactions between species, since version 2.
+		//
+
+		ArrayList<String[]> coefficients = ctx.interactions
+				.getExplicitCoefficients();
+
+		data.writeInt(coefficients.size());
+
+		for (String[] c : coefficients) {
+			for (String s : c)
+				data.writeUTF(s);
+		}
+
+		//
+		// Boids.
+		//
+
+		data.writeInt(ctx.getNodeCount());
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			Point3 p = b.getPosition();
+			Vector3 dir = b.getForces().getDirection();
+
+			data.writeUTF(b.getId());
+			data.writeDouble(p.x);
+			data.writeDouble(p.y);
+			data.writeDouble(p.z);
+			data.writeDouble(dir.data[0]);
+			data.writeDouble(dir.data[1]);
+			data.writeDouble(dir.data[2]);
+			data.writeInt(b.getSpecies().pop.getBirthDate(b));
+
+			//
+			// Position in the species and pending events, since version 3.
+			//
+
+			data.writeInt(b.speciesSlot);
+			data.writeInt(b.getSpecies().pop.getDeathDate(b));
+			data.writeInt(b.getSpecies().pop.getReproduceDate(b));
+		}
+
+		//
+		// Interaction edges.
+		//
+
+		data.writeInt(ctx.getEdgeCount());
+
+		for (Edge e : ctx.getEachEdge()) {
+			data.writeUTF(e.getNode0().getId());
+			data.writeUTF(e.getNode1().getId());
+		}
+
+		//
+		// Random number generator. Its internal state is only reachable
+		// through serialization.
+		//
+
+		ByteArrayOutputStream rng = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(rng);
+		oos.writeObject(ctx.random);
+		oos.close();
+
+		data.writeInt(rng.size());
+		data.write(rng.toByteArray());
+		data.flush();
+	}
+
+	/**
+	 * Replace the state of a simulation by the one of a checkpoint. All boids
+	 * present in the simulation are removed first. If the simulation is
+	 * journaled, the whole checkpoint is recorded as a single entry.
+	 * 
+	 * @param ctx
+	 *            The simulation to restore.
+	 * @param in
+	 *            Where to read the checkpoint. The stream is not closed.
+	 * @throws IOException
+	 *             if something wrong happens with io or if the checkpoint
+	 *             format is not supported.
+	 */
+	public static void read(BoidGraph ctx, InputStream in) throws IOException {
+		if (ctx.isJournaling()) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] data = new byte[4096];
+			int r;
+
+			while ((r = in.read(data)) >= 0)
+				buffer.write(data, 0, r);
+
+			ctx.journal.checkpointLoaded(buffer.toByteArray());
+			in = new ByteArrayInputStream(buffer.toByteArray());
+		}
+
+		ctx.internalChanges++;
+
+		try {
+			restore(ctx, in);
+		} finally {
+			ctx.internalChanges--;
+		}
+	}
+
+	/**
+	 * Restore a checkpoint, without journaling.
+	 */
+	private static void restore(BoidGraph ctx, InputStream in)
+			throws IOException {
+		DataInputStream data = new DataInputStream(in);
+
+		if (data.readInt() != MAGIC)
+			throw new IOException("not a boids checkpoint");
+
+		int version = data.readInt();
+
+		if (version < 1 || version > VERSION)
+			throw new IOException(String.format(
+					"unsupported checkpoint version %d", version));
+
+		//
+		// Global parameters.
+		//
+
+		ctx.setMaxSteps(data.readInt());
+		double area = data.readDouble();
+		ctx.setSleepTime(data.readInt());
+		ctx.setStoreForcesAttributes(data.readBoolean());
+		ctx.setNormalizeMode(data.readBoolean());
+		long seed = data.readLong();
+		int step = data.readInt();
+		String forcesFactory = data.readUTF();
+
+		clear(ctx);
+
+		if (!ctx.forcesFactory.getClass().getName().equals(forcesFactory))
+			ctx.set(BoidGraph.Parameter.FORCES_FACTORY, forcesFactory);
+
+		ctx.setArea(area);
+
+		//
+		// Species.
+		//
+
+		int speciesCount = data.readInt();
+		ArrayList<String> names = new ArrayList<String>(speciesCount);
+
+		for (int i = 0; i < speciesCount; i++) {
+			String name = data.readUTF();
+			String clazz = data.readUTF();
+			BoidSpecies species = ctx.getOrCreateSpecies(name, clazz);
+			int paramCount = data.readInt();
+
+			for (int j = 0; j < paramCount; j++) {
+				String p = data.readUTF();
+				String v = data.readUTF();
+
+				species.set(p, v);
+			}
+
+			species.setColor(new Color(data.readInt()));
+			species.timestamp = data.readLong();
+			species.currentIndex = data.readInt();
+			species.pop.setCurrentDate(data.readInt());
+
+			names.add(name);
+		}
+
+		for (String name : new ArrayList<String>(ctx.boidSpecies.keySet())) {
+			if (!names.contains(name))
+				ctx.deleteSpecies(name);
+		}
+
+		if (version >= 2) {
+			int coefficientCount = data.readInt();
+
+			ctx.interactions.clear();
+
+			for (int i = 0; i < coefficientCount; i++) {
+				String observer = data.readUTF();
+				String observed = data.readUTF();
+				String c = data.readUTF();
+				double v = Double.parseDouble(data.readUTF());
+
+				ctx.interactions.set(observer, observed,
+						SpeciesInteractions.Coefficient.valueOf(c), v);
+			}
+		}
+
+		//
+		// Boids and interaction edges. They are created in a batch so that
+		// the spatial index is built once all the boids are placed, and
+		// listeners are told about them at once.
+		//
+
+		ctx.beginBatch();
+
+		try {
+			int boidCount = data.readInt();
+			Boid[] boids = new Boid[boidCount];
+			int[] slots = new int[boidCount];
+			int[] births = new int[boidCount];
+			int[] deaths = new int[boidCount];
+			int[] reproduces = new int[boidCount];
+
+			for (int i = 0; i < boidCount; i++) {
+				Boid b = ctx.addNode(data.readUTF());
+
+				b.setPosition(data.readDouble(), data.readDouble(),
+						data.readDouble());
+				b.getForces()
+						.getDirection()
+						.set(data.readDouble(), data.readDouble(),
+								data.readDouble());
+
+				boids[i] = b;
+				births[i] = data.readInt();
+
+				if (version >= 3) {
+					slots[i] = data.readInt();
+					deaths[i] = data.readInt();
+					reproduces[i] = data.readInt();
+				} else {
+					b.getSpecies().pop.setBirthDate(b, births[i]);
+				}
+			}
+
+			if (version >= 3)
+				restoreDemography(ctx, boids, slots, births, deaths,
+						reproduces);
+
+			//
+			// Interaction edges.
+			//
+
+			int edgeCount = data.readInt();
+
+			for (int i = 0; i < edgeCount; i++) {
+				Boid b1 = ctx.getNode(data.readUTF());
+				Boid b2 = ctx.getNode(data.readUTF());
+
+				ctx.addEdge(Boid.getEdgeId(b1, b2), b1, b2);
+			}
+		} finally {
+			ctx.endBatch();
+		}
+
+		//
+		// Random number generator.
+		//
+
+		byte[] rng = new byte[data.readInt()];
+		data.readFully(rng);
+
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(
+				rng));
+
+		try {
+			ctx.random = (Random) ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		} finally {
+			ois.close();
+		}
+
+		ctx.randomSeed = seed;
+		ctx.step = step;
+	}
+
+	/**
+	 * Put the boids of each species back at their saved position in the
+	 * species, with their saved demographic dates, so that no date is drawn
+	 * again and the per-step draws go to the same boids.
+	 */
+	protected static void restoreDemography(BoidGraph ctx, Boid[] boids,
+			int[] slots, int[] births, int[] deaths, int[] reproduces)
+			throws IOException {
+		int capacity = ctx.getSpeciesHandleCapacity();
+		Boid[][] bySlot = new Boid[capacity][];
+		int[][] b = new int[capacity][];
+		int[][] d = new int[capacity][];
+		int[][] r = new int[capacity][];
+
+		for (BoidSpecies species : ctx.boidSpecies.values()) {
+			int h = species.getHandle(), n = species.boids.size();
+
+			bySlot[h] = new Boid[n];
+			b[h] = new int[n];
+			d[h] = new int[n];
+			r[h] = new int[n];
+		}
+
+		for (int i = 0; i < boids.length; i++) {
+			int h = boids[i].getSpecies().getHandle();
+			int slot = slots[i];
+
+			if (slot < 0 || slot >= bySlot[h].length
+					|| bySlot[h][slot] != null)
+				throw new IOException("corrupted checkpoint");
+
+			bySlot[h][slot] = boids[i];
+			b[h][slot] = births[i];
+			d[h][slot] = deaths[i];
+			r[h][slot] = reproduces[i];
+		}
+
+		for (BoidSpecies species : ctx.boidSpecies.values()) {
+			int h = species.getHandle();
+			species.restoreDemography(bySlot[h], b[h], d[h], r[h]);
+		}
+	}
+
+	/**
+	 * Remove all the boids of a simulation, keeping its species.
+	 */
+	protected static void clear(BoidGraph ctx) {
+		ArrayList<Boid> boids = new ArrayList<Boid>(ctx.getNodeCount());
+
+		for (Boid b : ctx.<Boid> getEachNode())
+			boids.add(b);
+
+		ctx.removeBoids(boids);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.Collection;
+
+/**
+ * Receives the visible boids found by a search, and decides which ones to
+ * keep.
+ * 
+ * <p>
+ * Searches offer each visible boid with its distance, and may skip the parts
+ * of space farther than {@link #getRadius2()}.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public abstract class BoidCollector {
+	/**
+	 * Offer a boid.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @param dist2
+	 *            The square of its distance.
+	 * @return True if the boid is kept, for now.
+	 */
+	public abstract boolean offer(Boid b, double dist2);
+
+	/**
+	 * Square of the distance beyond which boids are not worth offering.
+	 * 
+	 * @return A distance, infinity if all boids are of interest.
+	 */
+	public abstract double getRadius2();
+
+	/**
+	 * Number of boids kept.
+	 * 
+	 * @return The number of boids.
+	 */
+	public abstract int size();
+
+	/**
+	 * Add the kept boids to a collection, in no particular order.
+	 * 
+	 * @param result
+	 *            The collection.
+	 */
+	public abstract void addTo(Collection<Boid> result);
+}
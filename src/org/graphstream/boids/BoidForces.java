@@ -28,8 +28,12 @@
  */
 package org.graphstream.boids;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
+import org.graphstream.boids.rules.SteeringPipeline;
 import org.miv.pherd.geom.Point3;
 import org.miv.pherd.geom.Vector3;
 
@@ -79,8 +83,44 @@ public abstract class BoidForces {
 	 */
 	public int countRep;
 
+	/**
+	 * Sum of the attraction coefficients of the boids in the barycenter.
+	 */
+	public double attractionWeight;
+
+	/**
+	 * Sum of the alignment coefficients of the boids in the direction.
+	 */
+	public double alignmentWeight;
+
+	/**
+	 * Interaction table of the actual step, see {@link SpeciesInteractions}.
+	 */
+	protected double[] interactions;
+
+	/**
+	 * Start of the row of the boid species in the interaction table.
+	 */
+	protected int interactionRow;
+
 	protected Boid boid;
 
+	/**
+	 * Heap used by {@link #getNearestNeighborhood(int)}.
+	 */
+	protected NearestBoids nearest;
+
+	/**
+	 * Sample used by {@link #getSampledNeighborhood(int)}.
+	 */
+	protected SampledBoids sampled;
+
+	/**
+	 * What the steering rules of the species accumulate for this boid, when
+	 * the species has rules.
+	 */
+	protected double[] ruleState = new double[0];
+
 	/**
 	 * Direction of the boid.
 	 */
@@ -101,6 +141,24 @@ public abstract class BoidForces {
 				((BoidGraph) b.getGraph()).getRandom().nextDouble(), 0);
 	}
 
+	/**
+	 * Put the forces back in the state of new forces, when the boid is
+	 * recycled. A new random direction is drawn, the same way the constructor
+	 * does.
+	 */
+	public void reset() {
+		barycenter.set(0, 0, 0);
+		direction.fill(0);
+		attraction.fill(0);
+		repulsion.fill(0);
+		countAtt = 0;
+		countRep = 0;
+		attractionWeight = 0;
+		alignmentWeight = 0;
+		dir.set(((BoidGraph) boid.getGraph()).getRandom().nextDouble(),
+				((BoidGraph) boid.getGraph()).getRandom().nextDouble(), 0);
+	}
+
 	/**
 	 * Compute the forces applied to a boid under the form of a barycenter that
 	 * the boids tries to reach (attraction), an overall direction for all the
@@ -108,43 +166,73 @@ public abstract class BoidForces {
 	 */
 	public void compute() {
 		Collection<Boid> neigh;
-		BoidSpecies species = boid.getSpecies();
-		Vector3 dir = getDirection();
+		SpeciesParameters species = boid.getSpecies().getParameters();
 		Vector3 rep = new Vector3();
-		Point3 nextPos = getNextPosition();
 
+		beginCompute();
+
+		if (species.integratesAllVisible())
+			neigh = getNeighborhood();
+		else if (species.neighborhood == BoidSpecies.Neighborhood.NEAREST)
+			neigh = getNearestNeighborhood(species.maxNeighborhood);
+		else
+			neigh = getSampledNeighborhood(species.sampleSize);
+
+		for (Boid b : neigh) {
+			actionWithNeighboor(b, rep);
+		}
+
+		endCompute(neigh);
+	}
+
+	/**
+	 * First part of {@link #compute()}, before the neighbors are integrated.
+	 * Engines that integrate neighbors themselves call it, then
+	 * {@link #interact(Boid, Vector3, double)} for each neighbor, then
+	 * {@link #endCompute(Collection)}.
+	 */
+	protected void beginCompute() {
 		barycenter.set(0, 0, 0);
 		direction.fill(0);
 		attraction.fill(0);
 		repulsion.fill(0);
 		countAtt = 0;
 		countRep = 0;
+		attractionWeight = 0;
+		alignmentWeight = 0;
 
-		neigh = getNeighborhood();
+		SpeciesInteractions matrix = ((BoidGraph) boid.getGraph())
+				.getInteractions();
+		interactions = matrix.getTable();
+		interactionRow = boid.getSpecies().handle * matrix.getSize()
+				* SpeciesInteractions.STRIDE;
 
-		for (Boid b : neigh) {
-			actionWithNeighboor(b, rep);
-		}
+		SteeringPipeline rules = boid.getSpecies().getParameters().rules;
 
-		boid.checkNeighborhood(neigh.toArray(new Boid[neigh.size()]));
-
-		if (countAtt > 0) {
-			barycenter.scale(1f / countAtt, 1f / countAtt, 1f / countAtt);
-			direction.scalarDiv(countAtt);
-			attraction
-					.set(barycenter.x - boid.getPosition().x, barycenter.y
-							- boid.getPosition().y,
-							barycenter.z - boid.getPosition().z);
+		if (rules != null) {
+			if (ruleState.length < rules.getStateSize())
+				ruleState = new double[rules.getStateSize()];
+			else
+				Arrays.fill(ruleState, 0);
 		}
+	}
 
-		if (countRep > 0) {
-			repulsion.scalarDiv(countRep);
-		}
+	/**
+	 * Last part of {@link #compute()}, once all the neighbors are integrated:
+	 * update the edges of the boid and its direction and next position.
+	 * 
+	 * @param neigh
+	 *            The neighbors integrated.
+	 */
+	protected void endCompute(Collection<Boid> neigh) {
+		SpeciesParameters species = boid.getSpecies().getParameters();
+		Vector3 dir = getDirection();
+		Point3 nextPos = getNextPosition();
+
+		boid.checkNeighborhood(neigh.toArray(new Boid[neigh.size()]));
+		averageForces();
 
-		direction.scalarMult(species.getDirectionFactor());
-		attraction.scalarMult(species.getAttractionFactor());
-		repulsion.scalarMult(species.getRepulsionFactor());
-		dir.scalarMult(species.getInertia());
+		dir.scalarMult(species.inertia);
 
 		dir.add(direction);
 		dir.add(attraction);
@@ -152,14 +240,14 @@ public abstract class BoidForces {
 
 		if (((BoidGraph) boid.getGraph()).isNormalizeMode()) {
 			double len = dir.normalize();
-			if (len <= species.getMinSpeed())
-				len = species.getMinSpeed();
-			else if (len >= species.getMaxSpeed())
-				len = species.getMaxSpeed();
+			if (len <= species.minSpeed)
+				len = species.minSpeed;
+			else if (len >= species.maxSpeed)
+				len = species.maxSpeed;
 
-			dir.scalarMult(species.getSpeedFactor() * len);
+			dir.scalarMult(species.speedFactor * len);
 		} else {
-			dir.scalarMult(species.getSpeedFactor());
+			dir.scalarMult(species.speedFactor);
 		}
 
 		checkWalls();
@@ -168,6 +256,68 @@ public abstract class BoidForces {
 		boid.setAttribute("xyz", nextPos.x, nextPos.y, nextPos.z);
 	}
 
+	/**
+	 * Turn the sums of the neighbors into the means the boid steers to, each
+	 * scaled by the factor of its species.
+	 */
+	protected void averageForces() {
+		SpeciesParameters species = boid.getSpecies().getParameters();
+
+		if (species.rules != null) {
+			species.rules.steer(this, ruleState, direction);
+			attraction.fill(0);
+			repulsion.fill(0);
+			return;
+		}
+
+		if (attractionWeight > 0) {
+			barycenter.scale(1 / attractionWeight, 1 / attractionWeight,
+					1 / attractionWeight);
+			attraction
+					.set(barycenter.x - boid.getPosition().x, barycenter.y
+							- boid.getPosition().y,
+							barycenter.z - boid.getPosition().z);
+		}
+
+		if (alignmentWeight > 0) {
+			direction.scalarDiv(alignmentWeight);
+		}
+
+		if (countRep > 0) {
+			repulsion.scalarDiv(countRep);
+		}
+
+		direction.scalarMult(species.directionFactor);
+		attraction.scalarMult(species.attractionFactor);
+		repulsion.scalarMult(species.repulsionFactor);
+	}
+
+	/**
+	 * The steering the neighbors of the boid would give it, without the
+	 * inertia, the speed limits and the walls. The forces of the last
+	 * {@link #compute()} are overwritten, this is meant for measures between
+	 * steps, for example to compare neighborhood modes.
+	 * 
+	 * @param neigh
+	 *            The neighbors to integrate.
+	 * @param result
+	 *            Where to store the steering.
+	 */
+	public void steering(Collection<Boid> neigh, Vector3 result) {
+		Vector3 rep = new Vector3();
+
+		beginCompute();
+
+		for (Boid b : neigh)
+			actionWithNeighboor(b, rep);
+
+		averageForces();
+
+		result.copy(direction);
+		result.add(attraction);
+		result.add(repulsion);
+	}
+
 	/**
 	 * Integrate a repulsion vector.
 	 */
@@ -177,10 +327,12 @@ public abstract class BoidForces {
 	}
 
 	/**
-	 * Integrate a direction influence.
+	 * Integrate a direction influence, with a weight of one in the mean
+	 * direction.
 	 */
 	public void addDirection(Vector3 dir) {
 		direction.add(dir);
+		alignmentWeight++;
 		countAtt++;
 	}
 
@@ -193,10 +345,12 @@ public abstract class BoidForces {
 	}
 
 	/**
-	 * Integrate a new point of influence.
+	 * Integrate a new point of influence, with a weight of one in the
+	 * barycenter.
 	 */
 	public void moveBarycenter(Point3 p) {
 		barycenter.move(p);
+		attractionWeight++;
 	}
 
 	/**
@@ -211,32 +365,116 @@ public abstract class BoidForces {
 	protected void actionWithNeighboor(Boid b, Vector3 rep) {
 		Point3 p1 = boid.getPosition();
 		Point3 p2 = b.getPosition();
-		BoidSpecies p1Species = boid.getSpecies();
-		BoidSpecies p2Species = b.getSpecies();
-		double v = boid.getSpecies().getViewZone();
 
 		rep.set(p1.x - p2.x, p1.y - p2.y, p1.z - p2.z);
 
-		double len = rep.length();
+		interact(b, rep, rep.length());
+	}
 
-		if (len != 0) {
-			if (p1Species != p2Species)
-				rep.scalarMult(1 / (len * len) * p2Species.getFearFactor());
-			else
-				rep.scalarMult(1 / (len * len));
+	/**
+	 * Integrate a visible boid whose offset to this boid is already known.
+	 * 
+	 * @param b
+	 *            The boid visible by this boid.
+	 * @param rep
+	 *            The vector from b to this boid, used to compute the repulsion
+	 *            and modified.
+	 * @param len
+	 *            The length of rep.
+	 */
+	protected void interact(Boid b, Vector3 rep, double len) {
+		Point3 p2 = b.getPosition();
+		SpeciesParameters params = boid.getSpecies().getParameters();
+
+		if (params.rules != null) {
+			params.rules.neighbor(this, b, rep, len, ruleState);
+			return;
 		}
 
-		double a = Math.log(Math.min(len, v)) / Math.log(v);
-		rep.scalarMult(a);
+		double v = params.separationZone;
+		int k = interactionRow + b.getSpecies().handle
+				* SpeciesInteractions.STRIDE;
+		double fear = interactions[k + SpeciesInteractions.FEAR];
+		double att = interactions[k + SpeciesInteractions.ATTRACTION];
+		double align = interactions[k + SpeciesInteractions.ALIGNMENT];
+
+		//
+		// The boids are searched once at the largest zone, each rule only
+		// takes the boids in its own distance band.
+		//
+
+		if (!params.singleZone) {
+			if (len > params.cohesionZone)
+				att = 0;
+			if (len > params.alignmentZone)
+				align = 0;
+
+			if (len > v) {
+				integrate(b, p2, att, align);
+				return;
+			}
+		}
+
+		if (len != 0)
+			rep.scalarMult(1 / (len * len) * fear);
+
+		rep.scalarMult(falloff(len));
 
 		repulsion.add(rep);
 		countRep++;
 
-		if (p1Species == p2Species) {
-			barycenter.move(p2);
-			direction.add(b.getForces().getDirection());
-			countAtt++;
+		integrate(b, p2, att, align);
+	}
+
+	/**
+	 * Scale of the repulsion of a boid at a given distance, from one at the
+	 * separation zone down to minus infinity at zero.
+	 * 
+	 * @param len
+	 *            The distance.
+	 * @return log(min(len, separation zone)) / log(separation zone).
+	 */
+	public double falloff(double len) {
+		SpeciesParameters params = boid.getSpecies().getParameters();
+		double v = params.separationZone;
+
+		if (params.kernel == BoidSpecies.Kernel.FAST)
+			return len < v ? FastMath.log(len) * params.invLogSeparation : 1;
+
+		return Math.log(Math.min(len, v)) / Math.log(v);
+	}
+
+	/**
+	 * Integrate the attraction and alignment of a visible boid.
+	 * 
+	 * @param b
+	 *            The boid visible by this boid.
+	 * @param p2
+	 *            Its position.
+	 * @param att
+	 *            Its attraction weight.
+	 * @param align
+	 *            Its alignment weight.
+	 */
+	protected void integrate(Boid b, Point3 p2, double att, double align) {
+		if (att != 0) {
+			barycenter.x += p2.x * att;
+			barycenter.y += p2.y * att;
+			barycenter.z += p2.z * att;
+			attractionWeight += att;
 		}
+
+		if (align != 0) {
+			double[] d = b.getForces().getDirection().data;
+
+			direction.data[0] += d[0] * align;
+			direction.data[1] += d[1] * align;
+			direction.data[2] += d[2] * align;
+			alignmentWeight += align;
+		}
+
+		if (att != 0 || align != 0)
+			countAtt++;
 	}
 
 	/**
@@ -295,22 +533,41 @@ public abstract class BoidForces {
 	 * @return True if point is visible by source.
 	 */
 	public boolean isVisible(Boid boid, Point3 point) {
+		return isVisible(boid, point, boid.getSpecies().getParameters());
+	}
+
+	/**
+	 * Same as {@link #isVisible(Boid, Point3)} with given parameters rather
+	 * than those of the species of the boid for the actual step.
+	 * 
+	 * @param boid
+	 *            The source boid.
+	 * @param point
+	 *            The point to consider.
+	 * @param species
+	 *            The parameters of the source species.
+	 * @return True if point is visible by source.
+	 */
+	public boolean isVisible(Boid boid, Point3 point,
+			SpeciesParameters species) {
 		//
 		// Check both the distance and angle of view according to the
 		// direction
 		// of the source.
 		//
-		BoidSpecies species = boid.getSpecies();
+
+		if (species.kernel == BoidSpecies.Kernel.FAST)
+			return isVisibleFast(boid, point, species);
 
 		Point3 pos = boid.getPosition();
 		double d = pos.distance(point);
 
 		// At good distance.
-		if (d <= species.getViewZone()) {
+		if (d <= species.viewZone) {
 			//
 			// If there is an angle of view.
 			//
-			if (species.getAngleOfView() > -1) {
+			if (species.angleOfView > -1) {
 				double angle;
 				Vector3 dir = new Vector3(boid.getForces().getDirection());
 				Vector3 light = new Vector3(point.x - pos.x, point.y - pos.y,
@@ -324,7 +581,7 @@ public abstract class BoidForces {
 				//
 				// In the field of view.
 				//
-				if (angle > species.getAngleOfView())
+				if (angle > species.angleOfView)
 					return true;
 			} else {
 				return true;
@@ -337,10 +594,94 @@ public abstract class BoidForces {
 		return false;
 	}
 
+	/**
+	 * Same test as {@link #isVisible(Boid, Point3)} without square roots,
+	 * divisions nor allocations. The distance is compared squared, and the
+	 * angle test cos(a) &gt; c, with cos(a) = dot / (|dir| |light|), is
+	 * compared squared with the sign of both sides taken apart.
+	 */
+	protected boolean isVisibleFast(Boid boid, Point3 point,
+			SpeciesParameters species) {
+		Point3 pos = boid.getPosition();
+		double lx = point.x - pos.x, ly = point.y - pos.y, lz = point.z
+				- pos.z;
+		double l2 = lx * lx + ly * ly + lz * lz;
+
+		if (l2 > species.viewZone2)
+			return false;
+
+		if (species.angleOfView <= -1)
+			return true;
+
+		double[] d = boid.getForces().getDirection().data;
+		double dot = d[0] * lx + d[1] * ly + d[2] * lz;
+		double n2 = (d[0] * d[0] + d[1] * d[1] + d[2] * d[2]) * l2;
+
+		if (n2 == 0)
+			return false;
+
+		if (species.angleOfView >= 0)
+			return dot > 0 && dot * dot > species.angleOfView2 * n2;
+
+		return dot >= 0 || dot * dot < -species.angleOfView2 * n2;
+	}
+
+	/**
+	 * True if a boid is visible by another, taking the visibility coefficient
+	 * of their species into account (see {@link SpeciesInteractions}).
+	 * 
+	 * @param boid
+	 *            The source boid.
+	 * @param other
+	 *            The boid to consider.
+	 * @return True if other is visible by source.
+	 */
+	public boolean isVisible(Boid boid, Boid other) {
+		double visibility = ((BoidGraph) boid.getGraph()).getInteractions()
+				.get(boid.getSpecies(), other.getSpecies(),
+						SpeciesInteractions.VISIBILITY);
+
+		if (visibility <= 0)
+			return false;
+
+		if (visibility < 1
+				&& boid.getPosition().distance(other.getPosition()) > boid
+						.getSpecies().getParameters().viewZone * visibility)
+			return false;
+
+		return isVisible(boid, other.getPosition());
+	}
+
 	public Vector3 getDirection() {
 		return dir;
 	}
 
+	/**
+	 * The boid these forces apply to.
+	 * 
+	 * @return The boid.
+	 */
+	public Boid getBoid() {
+		return boid;
+	}
+
+	/**
+	 * Coefficient of the interaction of the boid with another boid, during
+	 * the actual computation.
+	 * 
+	 * @param b
+	 *            The other boid.
+	 * @param coefficient
+	 *            {@link SpeciesInteractions#FEAR},
+	 *            {@link SpeciesInteractions#ATTRACTION} or
+	 *            {@link SpeciesInteractions#ALIGNMENT}.
+	 * @return The coefficient.
+	 */
+	public double getCoefficient(Boid b, int coefficient) {
+		return interactions[interactionRow + b.getSpecies().handle
+				* SpeciesInteractions.STRIDE + coefficient];
+	}
+
 	public abstract void setPosition(double x, double y, double z);
 
 	public abstract Point3 getPosition();
@@ -349,5 +690,91 @@ public abstract class BoidForces {
 
 	public abstract Collection<Boid> getNeighborhood();
 
+	/**
+	 * The k nearest boids of the neighborhood.
+	 * 
+	 * @param k
+	 *            The number of boids.
+	 * @return At most k visible boids.
+	 */
+	public Collection<Boid> getNearestNeighborhood(int k) {
+		return collect(getNearestBoids(k));
+	}
+
+	/**
+	 * A uniform random sample of the neighborhood.
+	 * 
+	 * @param m
+	 *            The size of the sample.
+	 * @return At most m visible boids.
+	 */
+	public Collection<Boid> getSampledNeighborhood(int m) {
+		return collect(getSampledBoids(m));
+	}
+
+	/**
+	 * Offer the neighborhood to a collector, and give the boids it kept.
+	 * 
+	 * <p>
+	 * By default the whole neighborhood is searched first. Forces systems
+	 * able to offer the boids to the collector during their search, and to
+	 * use its radius to limit the search, should override this.
+	 * </p>
+	 * 
+	 * @param collector
+	 *            The collector.
+	 * @return The boids kept.
+	 */
+	protected Collection<Boid> collect(BoidCollector collector) {
+		Point3 p = boid.getPosition();
+
+		for (Boid b : getNeighborhood()) {
+			Point3 q = b.getPosition();
+			double dx = q.x - p.x, dy = q.y - p.y, dz = q.z - p.z;
+
+			collector.offer(b, dx * dx + dy * dy + dz * dz);
+		}
+
+		ArrayList<Boid> kept = new ArrayList<Boid>(collector.size());
+		collector.addTo(kept);
+
+		return kept;
+	}
+
+	/**
+	 * An empty heap of nearest boids, reused from one call to the next.
+	 * 
+	 * @param k
+	 *            Capacity of the heap.
+	 * @return The heap.
+	 */
+	protected NearestBoids getNearestBoids(int k) {
+		if (nearest == null)
+			nearest = new NearestBoids();
+
+		nearest.reset(k);
+
+		return nearest;
+	}
+
+	/**
+	 * An empty sample of boids, reused from one call to the next.
+	 * 
+	 * @param m
+	 *            Capacity of the sample.
+	 * @return The sample.
+	 */
+	protected SampledBoids getSampledBoids(int m) {
+		Random random = ((BoidGraph) boid.getGraph()).getRandom();
+
+		if (sampled == null)
+			sampled = new SampledBoids(random);
+
+		sampled.random = random;
+		sampled.reset(m);
+
+		return sampled;
+	}
+
 	public abstract boolean is3D();
 }
\ No newline at end of file
@@ -28,11 +28,17 @@
  */
 package org.graphstream.boids;
 
+import java.util.Collection;
+
 import org.miv.pherd.geom.Point3;
 
 /**
  * Object used to create and compute forces of boids.
  * 
+ * <p>
+ * Factories that do not need batches nor recycling can extend
+ * {@link BoidForcesFactoryAdapter}.
+ * </p>
  */
 public interface BoidForcesFactory {
 	/**
@@ -50,6 +56,41 @@ public interface BoidForcesFactory {
 	 */
 	BoidForces createNewForces(Boid b);
 
+	/**
+	 * Reset the forces of a boid taken from the pool of its species, so that
+	 * they can be used again. The forces must be in the same state, and
+	 * random numbers must be drawn in the same order, as with
+	 * {@link #createNewForces(Boid)}. If the forces were not created by this
+	 * factory, new ones are created.
+	 * 
+	 * @param b
+	 *            the recycled boid
+	 * @param forces
+	 *            its previous forces object
+	 * @return the forces object to use for the boid
+	 */
+	BoidForces recycleForces(Boid b, BoidForces forces);
+
+	/**
+	 * Called at the end of a batch with all the boids added during the batch
+	 * (see {@link org.graphstream.boids.BoidGraph#beginBatch()}). These boids
+	 * are not reported individually, so the factory should ignore graph events
+	 * while {@link org.graphstream.boids.BoidGraph#isBatching()} is true.
+	 * 
+	 * @param boids
+	 *            the added boids
+	 */
+	void boidsAdded(Collection<Boid> boids);
+
+	/**
+	 * Called at the end of a batch with all the boids removed during the
+	 * batch. The boids are no more in the graph.
+	 * 
+	 * @param boids
+	 *            the removed boids
+	 */
+	void boidsRemoved(Collection<Boid> boids);
+
 	/**
 	 * Compute forces for all boids.
 	 */
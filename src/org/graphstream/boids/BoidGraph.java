@@ -28,15 +28,25 @@
  */
 package org.graphstream.boids;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.graphstream.boids.forces.ntree.NTreeForcesFactory;
 import org.graphstream.graph.Graph;
@@ -63,8 +73,22 @@ public class BoidGraph extends AdjacencyListGraph {
 	public static boolean VERBOSE = Boolean.parseBoolean(System.getProperty(
 			"boids.verbose", "false"));
 
+	/**
+	 * A change to the simulation, applied between two steps. See
+	 * {@link BoidGraph#post(Command)}.
+	 */
+	public static interface Command {
+		/**
+		 * Apply the change.
+		 * 
+		 * @param ctx
+		 *            The simulation, not running a step.
+		 */
+		void apply(BoidGraph ctx);
+	}
+
 	public static enum Parameter {
-		MAX_STEPS, AREA, SLEEP_TIME, STORE_FORCES_ATTRIBUTES, NORMALIZE_MODE, RANDOM_SEED, FORCES_FACTORY
+		MAX_STEPS, AREA, SLEEP_TIME, STORE_FORCES_ATTRIBUTES, NORMALIZE_MODE, RANDOM_SEED, FORCES_FACTORY, PUBLISH_SNAPSHOTS
 	}
 
 	/**
@@ -140,6 +164,97 @@ public class BoidGraph extends AdjacencyListGraph {
 	 */
 	protected ArrayList<BoidGraphListener> boidGraphListeners = new ArrayList<BoidGraphListener>();
 
+	/**
+	 * Snapshot of the actual step, published and shared by the asynchronous
+	 * listeners.
+	 */
+	protected BoidGraphSnapshot stepSnapshot;
+
+	/**
+	 * Publish a snapshot at the end of each step.
+	 */
+	protected boolean publishSnapshots;
+
+	/**
+	 * The last snapshot published at the end of a step.
+	 */
+	protected volatile BoidGraphSnapshot publishedSnapshot;
+
+	/**
+	 * Epoch of the next snapshot.
+	 */
+	protected long snapshotEpoch;
+
+	/**
+	 * Changes posted from any thread, waiting for the end of the actual step.
+	 */
+	protected ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<Command>();
+
+	/**
+	 * Journal recording the changes made to the simulation, or null.
+	 */
+	protected BoidJournal journal;
+
+	/**
+	 * Greater than zero while the simulation changes itself (step,
+	 * configuration loading). These changes are not journaled since a replay
+	 * reproduces them.
+	 */
+	protected int internalChanges;
+
+	/**
+	 * True while the listeners are told a step begins. Changes they make are
+	 * journaled as such, since they occur before the forces are computed.
+	 */
+	protected boolean notifyingStep;
+
+	/**
+	 * Number of species created so far, used to give species a unique stamp.
+	 */
+	protected long speciesSerial;
+
+	/**
+	 * Greater than zero while boids are added or removed in a batch.
+	 */
+	protected int batch;
+
+	/**
+	 * Boids added during the actual batch.
+	 */
+	protected LinkedHashSet<Boid> batchAdded = new LinkedHashSet<Boid>();
+
+	/**
+	 * Boids removed during the actual batch.
+	 */
+	protected ArrayList<Boid> batchRemoved = new ArrayList<Boid>();
+
+	/**
+	 * Species of the boid being added by {@link #addBoid(BoidSpecies)}, so
+	 * that the node factory does not have to find it from the identifier.
+	 */
+	protected BoidSpecies addingSpecies;
+
+	/**
+	 * Boids by handle.
+	 */
+	protected HandleTable<Boid> boidHandles = new HandleTable<Boid>();
+
+	/**
+	 * Species by handle.
+	 */
+	protected HandleTable<BoidSpecies> speciesHandles = new HandleTable<BoidSpecies>();
+
+	/**
+	 * The last boid created or removed, so that the events about it can be
+	 * resolved without looking its identifier up.
+	 */
+	protected Boid current;
+
+	/**
+	 * Coefficients of the interactions between species.
+	 */
+	protected SpeciesInteractions interactions;
+
 	/**
 	 * New boids simulation represented as an interaction graph.
 	 * 
@@ -165,6 +280,7 @@ public class BoidGraph extends AdjacencyListGraph {
 		area = 1;
 		maxSteps = 0;
 		boidSpecies = new HashMap<String, BoidSpecies>();
+		interactions = new SpeciesInteractions(this);
 
 		setForcesFactory(new NTreeForcesFactory(this));
 	}
@@ -229,12 +345,109 @@ public class BoidGraph extends AdjacencyListGraph {
 	public void loadDGSConfiguration(InputStream in) throws IOException {
 		FileSourceDGS config = new FileSourceDGS();
 
-		config.addSink(this);
-		config.readAll(in);
-		config.removeSink(this);
+		if (isJournaling()) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] data = new byte[4096];
+			int r;
 
-		for (BoidSpecies species : boidSpecies.values())
-			species.populate();
+			while ((r = in.read(data)) >= 0)
+				buffer.write(data, 0, r);
+
+			journal.configurationLoaded(buffer.toByteArray());
+			in = new ByteArrayInputStream(buffer.toByteArray());
+		}
+
+		internalChanges++;
+
+		try {
+			config.addSink(this);
+			config.readAll(in);
+			config.removeSink(this);
+
+			beginBatch();
+
+			try {
+				for (BoidSpecies species : boidSpecies.values())
+					species.populate();
+			} finally {
+				endBatch();
+			}
+		} finally {
+			internalChanges--;
+		}
+	}
+
+	/**
+	 * Start recording the changes made to this simulation. This must be done
+	 * before any configuration is loaded. See {@link BoidJournal}.
+	 * 
+	 * @param journal
+	 *            The journal, or null to stop recording.
+	 */
+	public void setJournal(BoidJournal journal) {
+		if (this.journal != null)
+			this.journal.end();
+
+		this.journal = journal;
+
+		if (journal != null)
+			journal.begin(this);
+	}
+
+	/**
+	 * The journal recording the changes made to this simulation.
+	 * 
+	 * @return The journal or null if none.
+	 */
+	public BoidJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * True if a change made now must be recorded in the journal, that is if
+	 * there is a journal and the change does not come from the simulation
+	 * itself.
+	 */
+	boolean isJournaling() {
+		return journal != null && internalChanges == 0;
+	}
+
+	/**
+	 * Save the complete state of the simulation in a file. See
+	 * {@link BoidCheckpoint} for the content of the checkpoint.
+	 * 
+	 * @param path
+	 *            path to the checkpoint file.
+	 * @throws IOException
+	 *             if something wrong happens with io.
+	 */
+	public void saveCheckpoint(String path) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(path));
+
+		try {
+			BoidCheckpoint.write(this, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Restore the complete state of the simulation from a file created by
+	 * {@link #saveCheckpoint(String)}. The actual boids are removed.
+	 * 
+	 * @param path
+	 *            path to the checkpoint file.
+	 * @throws IOException
+	 *             if something wrong happens with io.
+	 */
+	public void loadCheckpoint(String path) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(path));
+
+		try {
+			BoidCheckpoint.read(this, in);
+		} finally {
+			in.close();
+		}
 	}
 
 	/**
@@ -319,6 +532,42 @@ public class BoidGraph extends AdjacencyListGraph {
 		this.storeForcesAttributes = storeForcesAttributes;
 	}
 
+	public boolean isPublishingSnapshots() {
+		return publishSnapshots;
+	}
+
+	/**
+	 * Publish or not an immutable snapshot at the end of each step. See
+	 * {@link #getSnapshot()}.
+	 * 
+	 * @param on
+	 *            True to publish snapshots.
+	 */
+	public void setPublishSnapshots(boolean on) {
+		publishSnapshots = on;
+
+		if (!on)
+			publishedSnapshot = null;
+	}
+
+	/**
+	 * The last snapshot published at the end of a step.
+	 * 
+	 * <p>
+	 * This is the way to read the state of the simulation from other threads
+	 * while it runs: the snapshot is immutable, and a new one replaces it at
+	 * the end of each step. Any number of threads can call this without
+	 * locking and without slowing down the simulation. Reading boids directly
+	 * from another thread gives inconsistent values.
+	 * </p>
+	 * 
+	 * @return The snapshot, or null if snapshots are not published or no step
+	 *         was done yet.
+	 */
+	public BoidGraphSnapshot getSnapshot() {
+		return publishedSnapshot;
+	}
+
 	public int getMaxSteps() {
 		return maxSteps;
 	}
@@ -378,6 +627,11 @@ public class BoidGraph extends AdjacencyListGraph {
 			}
 
 			boidSpecies.put(name, species);
+			species.handle = speciesHandles.add(species);
+			interactions.invalidate();
+
+			if (isJournaling())
+				journal.speciesCreated(species);
 
 			if (VERBOSE)
 				System.out.printf("new species : %s\n", name);
@@ -386,6 +640,15 @@ public class BoidGraph extends AdjacencyListGraph {
 		return species;
 	}
 
+	/**
+	 * Coefficients of the interactions between species.
+	 * 
+	 * @return The interaction matrix.
+	 */
+	public SpeciesInteractions getInteractions() {
+		return interactions;
+	}
+
 	/**
 	 * The species with the given name.
 	 * 
@@ -438,8 +701,26 @@ public class BoidGraph extends AdjacencyListGraph {
 		if (!name.equals("default")) {
 			BoidSpecies species = boidSpecies.get(name);
 			if (species != null) {
-				species.release();
+				if (isJournaling())
+					journal.speciesDeleted(name);
+
+				//
+				// The boids removed with the species are implied by its
+				// deletion, they are not journaled.
+				//
+
+				internalChanges++;
+
+				try {
+					species.release();
+				} finally {
+					internalChanges--;
+				}
+
 				boidSpecies.remove(name);
+				speciesHandles.remove(species.handle);
+				species.handle = -1;
+				interactions.speciesDeleted(name);
 			}
 		}
 	}
@@ -472,6 +753,9 @@ public class BoidGraph extends AdjacencyListGraph {
 		case RANDOM_SEED:
 			setRandomSeed(Long.parseLong(value));
 			break;
+		case PUBLISH_SNAPSHOTS:
+			setPublishSnapshots(Boolean.parseBoolean(value));
+			break;
 		case FORCES_FACTORY:
 			Class<?> ffClass;
 			Object obj = null;
@@ -517,11 +801,135 @@ public class BoidGraph extends AdjacencyListGraph {
 
 			if (obj instanceof BoidForcesFactory)
 				setForcesFactory((BoidForcesFactory) obj);
-			else
+			else {
 				System.err.printf("%s is not a forces factory\n", value);
+				return;
+			}
 
 			break;
 		}
+
+		if (isJournaling())
+			journal.parameterChanged(param, value);
+	}
+
+	/**
+	 * Post a change to apply to the simulation.
+	 * 
+	 * <p>
+	 * This can be called from any thread without locking. Posted changes are
+	 * applied in order, all together, by the simulation thread before the next
+	 * step begins, so that they never race with the forces computation. This
+	 * is the way to reconfigure a simulation while {@link #loop()} runs.
+	 * </p>
+	 * 
+	 * @param command
+	 *            The change.
+	 */
+	public void post(Command command) {
+		commands.add(command);
+	}
+
+	/**
+	 * Post a change of a global parameter. See {@link #post(Command)}.
+	 */
+	public void postSet(final String paramName, final String value) {
+		post(new Command() {
+			public void apply(BoidGraph ctx) {
+				ctx.set(paramName, value);
+			}
+		});
+	}
+
+	/**
+	 * Post a change of a species parameter. See {@link #post(Command)}.
+	 */
+	public void postSpeciesSet(final String species, final String paramName,
+			final String value) {
+		post(new Command() {
+			public void apply(BoidGraph ctx) {
+				ctx.getOrCreateSpecies(species).set(paramName, value);
+			}
+		});
+	}
+
+	/**
+	 * Post the creation of a species. See {@link #post(Command)}.
+	 * 
+	 * @param clazz
+	 *            The species class name, or null for {@link BoidSpecies}.
+	 */
+	public void postCreateSpecies(final String species, final String clazz) {
+		post(new Command() {
+			public void apply(BoidGraph ctx) {
+				ctx.getOrCreateSpecies(species, clazz);
+			}
+		});
+	}
+
+	/**
+	 * Post the deletion of a species. See {@link #post(Command)}.
+	 */
+	public void postDeleteSpecies(final String species) {
+		post(new Command() {
+			public void apply(BoidGraph ctx) {
+				ctx.deleteSpecies(species);
+			}
+		});
+	}
+
+	/**
+	 * Post the addition of boids. See {@link #post(Command)}.
+	 * 
+	 * @param species
+	 *            Name of the species of the new boids.
+	 * @param count
+	 *            Number of boids to add.
+	 */
+	public void postAddBoids(final String species, final int count) {
+		post(new Command() {
+			public void apply(BoidGraph ctx) {
+				BoidSpecies sp = ctx.getSpecies(species);
+
+				if (sp == null) {
+					System.err.printf("unknown species '%s'\n", species);
+					return;
+				}
+
+				ctx.addBoids(sp, count);
+			}
+		});
+	}
+
+	/**
+	 * Post the removal of a boid. See {@link #post(Command)}.
+	 * 
+	 * @param id
+	 *            Identifier of the boid.
+	 */
+	public void postRemoveBoid(final String id) {
+		post(new Command() {
+			public void apply(BoidGraph ctx) {
+				if (ctx.getNode(id) != null)
+					ctx.removeNode(id);
+			}
+		});
+	}
+
+	/**
+	 * Apply all the posted changes.
+	 */
+	protected void applyCommands() {
+		Command command;
+
+		while ((command = commands.poll()) != null) {
+			try {
+				command.apply(this);
+			} catch (RuntimeException e) {
+				System.err.printf("(WW) failed to apply command\n");
+				e.printStackTrace();
+			}
+		}
 	}
 
 	/**
@@ -548,20 +956,63 @@ public class BoidGraph extends AdjacencyListGraph {
 	}
 
 	public void step() {
+		applyCommands();
+
 		step++;
 
-		for (BoidSpecies sp : boidSpecies.values()) {
-			sp.terminateStep(step);
+		//
+		// Only the changes the simulation makes itself are not journaled.
+		// Listeners and sinks may change the simulation during the step, and
+		// these changes are recorded like any other.
+		//
+
+		internalChanges++;
+
+		try {
+			beginBatch();
+
+			try {
+				for (BoidSpecies sp : boidSpecies.values()) {
+					sp.freeze();
+					sp.terminateStep(step);
+				}
+			} finally {
+				endBatch();
+			}
+		} finally {
+			internalChanges--;
 		}
-		for (BoidGraphListener listener : boidGraphListeners) {
-			listener.step(step);
+
+		notifyingStep = true;
+
+		try {
+			for (BoidGraphListener listener : boidGraphListeners) {
+				listener.step(step);
+			}
+		} finally {
+			notifyingStep = false;
 		}
 
-		forcesFactory.step();
+		//
+		// Frozen after the listeners so that every species the forces
+		// computation meets has its row in the table.
+		//
+
+		interactions.freeze();
+		internalChanges++;
+
+		try {
+			forcesFactory.step();
+		} finally {
+			internalChanges--;
+		}
+
+		publishSnapshot();
 
 		stepBegins(step);
 	}
 
+
 	public boolean isLooping() {
 		return loop;
 	}
@@ -592,6 +1043,240 @@ public class BoidGraph extends AdjacencyListGraph {
 		boidGraphListeners.add(listener);
 	}
 
+	/**
+	 * Start a batch. Until the matching {@link #endBatch()}, boids added or
+	 * removed are registered in their species as usual, but the forces factory
+	 * and the boid graph listeners are only notified at the end of the batch,
+	 * with all of them at once. This allows the spatial index to be updated in
+	 * bulk. Batches can be nested, only the outer one notifies.
+	 */
+	public void beginBatch() {
+		batch++;
+	}
+
+	/**
+	 * End a batch started with {@link #beginBatch()}.
+	 */
+	public void endBatch() {
+		if (batch <= 0)
+			throw new IllegalStateException("no batch started");
+
+		if (--batch == 0)
+			flushBatch();
+	}
+
+	/**
+	 * Is a batch in progress ?
+	 * 
+	 * @return True if boids added or removed are notified later.
+	 */
+	public boolean isBatching() {
+		return batch > 0;
+	}
+
+	/**
+	 * Was a boid added during the batch being flushed, or in progress, and
+	 * not yet notified to the forces factory ?
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @return True if {@link BoidForcesFactory#boidsAdded(Collection)} will
+	 *         be called for this boid.
+	 */
+	public boolean isPendingAdd(Boid b) {
+		return batchAdded.contains(b);
+	}
+
+	/**
+	 * Add several boids of a species in one batch.
+	 * 
+	 * @param species
+	 *            The species of the new boids.
+	 * @param count
+	 *            Number of boids to add.
+	 * @return The new boids.
+	 */
+	public List<Boid> addBoids(BoidSpecies species, int count) {
+		ArrayList<Boid> added = new ArrayList<Boid>(Math.max(count, 0));
+
+		beginBatch();
+
+		try {
+			for (int i = 0; i < count; i++)
+				added.add(addBoid(species));
+		} finally {
+			endBatch();
+		}
+
+		return added;
+	}
+
+	/**
+	 * Add a boid of a species, with an identifier given by the species.
+	 * 
+	 * @param species
+	 *            The species of the new boid.
+	 * @return The new boid.
+	 */
+	public Boid addBoid(BoidSpecies species) {
+		BoidSpecies previous = addingSpecies;
+		addingSpecies = species;
+
+		try {
+			return addNode(species.nextId());
+		} finally {
+			addingSpecies = previous;
+		}
+	}
+
+	/**
+	 * Remove several boids in one batch. Boids that are no more in the graph
+	 * are ignored.
+	 * 
+	 * @param boids
+	 *            The boids to remove.
+	 */
+	public void removeBoids(Collection<? extends Boid> boids) {
+		beginBatch();
+
+		try {
+			for (Boid b : boids)
+				removeBoid(b);
+		} finally {
+			endBatch();
+		}
+	}
+
+	/**
+	 * Remove a boid. Nothing is done if the boid is no more in the graph.
+	 * 
+	 * @param b
+	 *            The boid to remove.
+	 */
+	public void removeBoid(Boid b) {
+		if (b.speciesSlot >= 0 && b.getGraph() == this) {
+			current = b;
+			removeNode(b.getId());
+		}
+	}
+
+	/**
+	 * The boid with the given handle.
+	 * 
+	 * @param handle
+	 *            The handle, see {@link Boid#getHandle()}.
+	 * @return The boid, or null if no boid has this handle.
+	 */
+	public Boid getBoid(int handle) {
+		return boidHandles.get(handle);
+	}
+
+	/**
+	 * The boid with the given identifier. The last boid created or removed is
+	 * found without lookup, which is the common case when handling graph
+	 * events.
+	 * 
+	 * @param id
+	 *            The identifier.
+	 * @return The boid, or null if no boid has this identifier.
+	 */
+	public Boid getBoid(String id) {
+		Boid b = current;
+
+		if (b != null && b.getId().equals(id))
+			return b;
+
+		return getNode(id);
+	}
+
+	/**
+	 * Upper bound of the boid handles. Arrays indexed by boid handle must be at
+	 * least this size.
+	 * 
+	 * @return One more than the greatest boid handle.
+	 */
+	public int getBoidHandleCapacity() {
+		return boidHandles.getCapacity();
+	}
+
+	/**
+	 * The species with the given handle.
+	 * 
+	 * @param handle
+	 *            The handle, see {@link BoidSpecies#getHandle()}.
+	 * @return The species, or null if no species has this handle.
+	 */
+	public BoidSpecies getSpecies(int handle) {
+		return speciesHandles.get(handle);
+	}
+
+	/**
+	 * Upper bound of the species handles. Arrays indexed by species handle
+	 * must be at least this size.
+	 * 
+	 * @return One more than the greatest species handle.
+	 */
+	public int getSpeciesHandleCapacity() {
+		return speciesHandles.getCapacity();
+	}
+
+	/**
+	 * Free the handle of a boid removed from the graph.
+	 */
+	protected void releaseHandle(Boid b) {
+		boidHandles.remove(b.handle);
+		b.handle = -1;
+	}
+
+	/**
+	 * Notify the forces factory and the listeners of the boids added and
+	 * removed during a batch.
+	 */
+	protected void flushBatch() {
+		if (batchRemoved.size() > 0) {
+			ArrayList<Boid> removed = batchRemoved;
+			batchRemoved = new ArrayList<Boid>();
+
+			forcesFactory.boidsRemoved(removed);
+
+			for (BoidGraphListener listener : boidGraphListeners) {
+				if (listener instanceof BoidGraphBatchListener) {
+					((BoidGraphBatchListener) listener).boidsDeleted(removed);
+				} else {
+					for (Boid b : removed)
+						listener.boidDeleted(b);
+				}
+			}
+
+			//
+			// Handles are freed once every one has been told, so that
+			// listeners can still use them. A boid recycled during the batch
+			// kept its handle.
+			//
+
+			for (Boid b : removed) {
+				if (!batchAdded.contains(b))
+					releaseHandle(b);
+			}
+		}
+
+		if (batchAdded.size() > 0) {
+			ArrayList<Boid> added = new ArrayList<Boid>(batchAdded);
+			batchAdded.clear();
+
+			forcesFactory.boidsAdded(added);
+
+			for (BoidGraphListener listener : boidGraphListeners) {
+				if (listener instanceof BoidGraphBatchListener) {
+					((BoidGraphBatchListener) listener).boidsAdded(added);
+				} else {
+					for (Boid b : added)
+						listener.boidAdded(b);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Unregister a listener for boid specific events.
 	 * 
@@ -605,6 +1290,94 @@ public class BoidGraph extends AdjacencyListGraph {
 		}
 	}
 
+	/**
+	 * Register a listener running in its own thread. At each step, the
+	 * listener receives an immutable snapshot of the boids through a bounded
+	 * queue. See {@link AsyncBoidGraphListener}.
+	 * 
+	 * @param listener
+	 *            The listener to register.
+	 * @param capacity
+	 *            Maximum number of snapshots waiting for the listener.
+	 * @param policy
+	 *            What to do when the listener is late and its queue is full.
+	 * @return The dispatch object, that gives the listener metrics.
+	 */
+	public AsyncBoidGraphListener addAsyncListener(
+			BoidSnapshotListener listener, int capacity,
+			AsyncBoidGraphListener.OverflowPolicy policy) {
+		AsyncBoidGraphListener async = new AsyncBoidGraphListener(this,
+				listener, capacity, policy);
+		addBoidGraphListener(async);
+
+		return async;
+	}
+
+	/**
+	 * Unregister a listener registered with
+	 * {@link #addAsyncListener(BoidSnapshotListener, int, AsyncBoidGraphListener.OverflowPolicy)}
+	 * and stop its thread.
+	 * 
+	 * @param listener
+	 *            The listener to remove.
+	 */
+	public void removeAsyncListener(BoidSnapshotListener listener) {
+		for (int i = 0; i < boidGraphListeners.size(); i++) {
+			BoidGraphListener l = boidGraphListeners.get(i);
+
+			if (l instanceof AsyncBoidGraphListener
+					&& ((AsyncBoidGraphListener) l).getListener() == listener) {
+				((AsyncBoidGraphListener) l).close();
+				boidGraphListeners.remove(i);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the boids for the actual step. The graph takes it
+	 * at the end of each step when snapshots are published or asynchronous
+	 * listeners are registered, otherwise it is taken the first time this is
+	 * called during a step. Subsequent calls during the same step share it.
+	 * 
+	 * @return The snapshot.
+	 */
+	public BoidGraphSnapshot getStepSnapshot() {
+		if (stepSnapshot == null || stepSnapshot.getStep() != step)
+			stepSnapshot = new BoidGraphSnapshot(this, step, snapshotEpoch++);
+
+		return stepSnapshot;
+	}
+
+	/**
+	 * Take the snapshot of the step once the boids moved, if someone reads
+	 * it. A single snapshot is published and given to all the asynchronous
+	 * listeners.
+	 */
+	protected void publishSnapshot() {
+		boolean async = false;
+
+		for (BoidGraphListener listener : boidGraphListeners) {
+			if (listener instanceof AsyncBoidGraphListener) {
+				async = true;
+				break;
+			}
+		}
+
+		if (!publishSnapshots && !async)
+			return;
+
+		stepSnapshot = new BoidGraphSnapshot(this, step, snapshotEpoch++);
+
+		if (publishSnapshots)
+			publishedSnapshot = stepSnapshot;
+
+		for (BoidGraphListener listener : boidGraphListeners) {
+			if (listener instanceof AsyncBoidGraphListener)
+				((AsyncBoidGraphListener) listener).submit(stepSnapshot);
+		}
+	}
+
 	private class Handler extends SinkAdapter {
 		/*
 		 * (non-Javadoc)
@@ -613,11 +1386,24 @@ public class BoidGraph extends AdjacencyListGraph {
 		 * long, java.lang.String)
 		 */
 		public void nodeAdded(String sourceId, long timeId, String nodeId) {
-			Boid b = getNode(nodeId);
+			Boid b = getBoid(nodeId);
+
+			//
+			// A boid removed then recycled in the same batch still has its
+			// handle.
+			//
+
+			if (b.handle < 0)
+				b.handle = boidHandles.add(b);
 
 			b.getSpecies().register(b);
 			b.getSpecies().checkClasses(b);
 
+			if (batch > 0) {
+				batchAdded.add(b);
+				return;
+			}
+
 			for (BoidGraphListener listener : boidGraphListeners)
 				listener.boidAdded(b);
 		}
@@ -629,11 +1415,22 @@ public class BoidGraph extends AdjacencyListGraph {
 		 * long, java.lang.String)
 		 */
 		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
-			Boid b = getNode(nodeId);
+			Boid b = getBoid(nodeId);
 			b.getSpecies().unregister(b);
 
+			if (batch > 0) {
+				if (batchAdded.remove(b))
+					releaseHandle(b);
+				else
+					batchRemoved.add(b);
+
+				return;
+			}
+
 			for (BoidGraphListener listener : boidGraphListeners)
 				listener.boidDeleted(b);
+
+			releaseHandle(b);
 		}
 
 		/*
@@ -734,16 +1531,30 @@ public class BoidGraph extends AdjacencyListGraph {
 
 	private class BoidFactory implements NodeFactory<Boid> {
 		public Boid newInstance(String id, Graph graph) {
-			BoidSpecies species = null;
+			BoidSpecies species = addingSpecies;
 
-			if (id.indexOf('.') != -1)
+			//
+			// The species is only parsed from the identifier when the node is
+			// not added by addBoid(), for example by a file source.
+			//
+
+			addingSpecies = null;
+
+			if (species == null && id.indexOf('.') != -1)
 				species = boidSpecies.get(id.substring(0, id.indexOf('.')));
 
 			if (species == null)
 				species = getDefaultSpecies();
 
 			Boid b = species.createBoid(id);
-			BoidForces f = forcesFactory.createNewForces(b);
+			BoidForces f;
+
+			current = b;
+
+			if (b.getForces() == null)
+				f = forcesFactory.createNewForces(b);
+			else
+				f = forcesFactory.recycleForces(b, b.getForces());
 
 			b.setForces(f);
 
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.List;
+
+/**
+ * Listener receiving the boids added or removed by a batch as a whole.
+ * 
+ * <p>
+ * When boids are added or removed inside a batch (see
+ * {@link BoidGraph#beginBatch()}), a listener implementing this interface
+ * receives one event for all of them at the end of the batch, instead of one
+ * {@link #boidAdded(Boid)} or {@link #boidDeleted(Boid)} per boid. Boids added
+ * then removed inside the same batch are not reported.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public interface BoidGraphBatchListener extends BoidGraphListener {
+	/**
+	 * Several boids were added.
+	 * 
+	 * @param boids
+	 *            The added boids, in order of addition.
+	 */
+	void boidsAdded(List<Boid> boids);
+
+	/**
+	 * Several boids were removed.
+	 * 
+	 * @param boids
+	 *            The removed boids, in order of removal.
+	 */
+	void boidsDeleted(List<Boid> boids);
+}
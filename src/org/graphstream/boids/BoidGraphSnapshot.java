@@ -0,0 +1,257 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Immutable copy of the state of the boids at a given step.
+ * 
+ * <p>
+ * A snapshot can be handed to other threads: it does not refer to any object
+ * of the simulation. Boids are stored in the order of the graph nodes at the
+ * time the snapshot was taken.
+ * </p>
+ * 
+ * <p>
+ * Each snapshot of a graph has an epoch, greater than the epoch of all the
+ * snapshots taken before it. This allows readers to know if the simulation
+ * advanced since the last snapshot they read.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class BoidGraphSnapshot {
+	/**
+	 * Step at which the snapshot was taken.
+	 */
+	private final double step;
+
+	/**
+	 * Number of this snapshot.
+	 */
+	private final long epoch;
+
+	/**
+	 * Number of interaction edges.
+	 */
+	private final int edgeCount;
+
+	/**
+	 * Population of each species.
+	 */
+	private final Map<String, Integer> populations;
+
+	/**
+	 * Identifier of each boid.
+	 */
+	private final String[] ids;
+
+	/**
+	 * Species name of each boid.
+	 */
+	private final String[] species;
+
+	/**
+	 * Handle of each boid.
+	 */
+	private final int[] handles;
+
+	/**
+	 * Species handle of each boid.
+	 */
+	private final int[] speciesHandles;
+
+	/**
+	 * Positions, three values per boid.
+	 */
+	private final double[] positions;
+
+	/**
+	 * Directions, three values per boid.
+	 */
+	private final double[] directions;
+
+	/**
+	 * Number of interaction edges of each boid.
+	 */
+	private final int[] degrees;
+
+	/**
+	 * Copy the actual state of a simulation.
+	 * 
+	 * @param ctx
+	 *            The simulation.
+	 * @param step
+	 *            The step to associate with the snapshot.
+	 * @param epoch
+	 *            The number of this snapshot.
+	 */
+	public BoidGraphSnapshot(BoidGraph ctx, double step, long epoch) {
+		int n = ctx.getNodeCount();
+		int i = 0;
+
+		this.step = step;
+		this.epoch = epoch;
+		this.edgeCount = ctx.getEdgeCount();
+		this.ids = new String[n];
+		this.species = new String[n];
+		this.handles = new int[n];
+		this.speciesHandles = new int[n];
+		this.positions = new double[n * 3];
+		this.directions = new double[n * 3];
+		this.degrees = new int[n];
+
+		HashMap<String, Integer> populations = new HashMap<String, Integer>();
+
+		for (BoidSpecies sp : ctx.boidSpecies.values())
+			populations.put(sp.getName(), sp.getPopulation());
+
+		this.populations = Collections.unmodifiableMap(populations);
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			Point3 p = b.getPosition();
+			Vector3 d = b.getForces().getDirection();
+
+			ids[i] = b.getId();
+			species[i] = b.getSpecies().getName();
+			handles[i] = b.getHandle();
+			speciesHandles[i] = b.getSpecies().getHandle();
+			positions[i * 3] = p.x;
+			positions[i * 3 + 1] = p.y;
+			positions[i * 3 + 2] = p.z;
+			directions[i * 3] = d.data[0];
+			directions[i * 3 + 1] = d.data[1];
+			directions[i * 3 + 2] = d.data[2];
+			degrees[i] = b.getDegree();
+			i++;
+		}
+	}
+
+	/**
+	 * Step at which the snapshot was taken.
+	 */
+	public double getStep() {
+		return step;
+	}
+
+	/**
+	 * Number of this snapshot.
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Number of interaction edges.
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Population of each species, by species name.
+	 * 
+	 * @return An unmodifiable map.
+	 */
+	public Map<String, Integer> getPopulations() {
+		return populations;
+	}
+
+	/**
+	 * Number of boids.
+	 */
+	public int getBoidCount() {
+		return ids.length;
+	}
+
+	/**
+	 * Identifier of the i-th boid.
+	 */
+	public String getId(int i) {
+		return ids[i];
+	}
+
+	/**
+	 * Species name of the i-th boid.
+	 */
+	public String getSpecies(int i) {
+		return species[i];
+	}
+
+	/**
+	 * Handle of the i-th boid, see {@link Boid#getHandle()}.
+	 */
+	public int getHandle(int i) {
+		return handles[i];
+	}
+
+	/**
+	 * Species handle of the i-th boid, see {@link BoidSpecies#getHandle()}.
+	 */
+	public int getSpeciesHandle(int i) {
+		return speciesHandles[i];
+	}
+
+	public double getX(int i) {
+		return positions[i * 3];
+	}
+
+	public double getY(int i) {
+		return positions[i * 3 + 1];
+	}
+
+	public double getZ(int i) {
+		return positions[i * 3 + 2];
+	}
+
+	public double getDirectionX(int i) {
+		return directions[i * 3];
+	}
+
+	public double getDirectionY(int i) {
+		return directions[i * 3 + 1];
+	}
+
+	public double getDirectionZ(int i) {
+		return directions[i * 3 + 2];
+	}
+
+	/**
+	 * Number of interaction edges of the i-th boid.
+	 */
+	public int getDegree(int i) {
+		return degrees[i];
+	}
+}
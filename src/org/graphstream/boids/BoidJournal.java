@@ -0,0 +1,276 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Record the information needed to replay a boid simulation.
+ * 
+ * <p>
+ * A simulation is deterministic given its random seed and the sequence of
+ * changes made to it while it runs. Instead of storing the positions of the
+ * boids at each step, the journal only stores the seed, the DGS configurations
+ * loaded, every parameter change done through {@link BoidGraph#set(String, String)}
+ * or {@link BoidSpecies#set(String, String)}, the species created or deleted
+ * and the boids added or removed from outside of the simulation. Each entry is
+ * stamped with the step at which it occurred. A {@link BoidReplay} can then
+ * regenerate the run.
+ * </p>
+ * 
+ * <p>
+ * The journal must be set on the graph using
+ * {@link BoidGraph#setJournal(BoidJournal)} right after the graph creation,
+ * before any configuration is loaded. Changes made by the simulation itself
+ * (demographics, populating species from the configuration) are not recorded
+ * since the replay reproduces them. Changes are replayed at the end of the
+ * step they are stamped with, except the changes made by listeners when the
+ * step begins, which are replayed at the same point of the step.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class BoidJournal implements BoidGraphListener {
+	/**
+	 * Magic number at the start of every journal ("GSBJ").
+	 */
+	public static final int MAGIC = 0x4753424A;
+
+	/**
+	 * Version of the journal format written by this class. Since version 2,
+	 * each string argument is preceded by a flag telling whether it is null.
+	 * Since version 3, each entry tells whether it was made by a listener
+	 * when the step began, and a restored checkpoint is recorded as a single
+	 * entry.
+	 */
+	public static final int VERSION = 3;
+
+	/**
+	 * Kinds of journal entries.
+	 */
+	public static enum Entry {
+		CONFIGURATION, SET, SPECIES_SET, SPECIES_CREATED, SPECIES_DELETED, BOID_ADDED, BOID_REMOVED, END, CHECKPOINT
+	}
+
+	/**
+	 * Where entries are written.
+	 */
+	protected DataOutputStream out;
+
+	/**
+	 * The recorded graph, null until the journal is set on a graph.
+	 */
+	protected BoidGraph ctx;
+
+	/**
+	 * New journal writing to the given stream.
+	 * 
+	 * @param out
+	 *            Where to write the journal.
+	 */
+	public BoidJournal(OutputStream out) {
+		this.out = new DataOutputStream(out);
+		this.ctx = null;
+	}
+
+	/**
+	 * Called by the graph when this journal is set. This writes the journal
+	 * header with the graph random seed.
+	 * 
+	 * @param ctx
+	 *            The recorded graph.
+	 */
+	protected void begin(BoidGraph ctx) {
+		if (this.ctx != null)
+			throw new RuntimeException("journal already in use");
+
+		this.ctx = ctx;
+
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(ctx.getRandomSeed());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		ctx.addBoidGraphListener(this);
+	}
+
+	/**
+	 * Stop recording. This writes the step at which the run ends and flushes
+	 * the journal. The underlying stream is not closed.
+	 */
+	public void end() {
+		if (ctx == null)
+			return;
+
+		ctx.removeBoidGraphListener(this);
+		entry(Entry.END);
+		flush();
+		ctx = null;
+	}
+
+	/**
+	 * A DGS configuration was loaded.
+	 * 
+	 * @param dgs
+	 *            The raw configuration.
+	 */
+	protected void configurationLoaded(byte[] dgs) {
+		entry(Entry.CONFIGURATION);
+
+		try {
+			out.writeInt(dgs.length);
+			out.write(dgs);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * A checkpoint was restored.
+	 * 
+	 * @param checkpoint
+	 *            The raw checkpoint.
+	 */
+	protected void checkpointLoaded(byte[] checkpoint) {
+		entry(Entry.CHECKPOINT);
+
+		try {
+			out.writeInt(checkpoint.length);
+			out.write(checkpoint);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * A global parameter was changed.
+	 */
+	protected void parameterChanged(BoidGraph.Parameter p, String value) {
+		entry(Entry.SET, p.name(), value);
+	}
+
+	/**
+	 * A species parameter was changed.
+	 */
+	protected void speciesParameterChanged(BoidSpecies species, String p,
+			String value) {
+		entry(Entry.SPECIES_SET, species.getName(), p, value);
+	}
+
+	/**
+	 * A species was created.
+	 */
+	protected void speciesCreated(BoidSpecies species) {
+		entry(Entry.SPECIES_CREATED, species.getName(), species.getClass()
+				.getName());
+	}
+
+	/**
+	 * A species was deleted.
+	 */
+	protected void speciesDeleted(String name) {
+		entry(Entry.SPECIES_DELETED, name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidGraphListener#boidAdded(org.graphstream.boids
+	 * .Boid)
+	 */
+	public void boidAdded(Boid boid) {
+		if (ctx.isJournaling()) {
+			entry(Entry.BOID_ADDED, boid.getId());
+
+			try {
+				out.writeInt(boid.getSpecies().currentIndex);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidGraphListener#boidDeleted(org.graphstream.boids
+	 * .Boid)
+	 */
+	public void boidDeleted(Boid boid) {
+		if (ctx.isJournaling())
+			entry(Entry.BOID_REMOVED, boid.getId());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidGraphListener#step(double)
+	 */
+	public void step(double time) {
+	}
+
+	/**
+	 * Flush the underlying stream.
+	 */
+	public void flush() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write an entry header followed by its string arguments. Arguments may
+	 * be null, for example when an interaction coefficient is reset.
+	 */
+	protected void entry(Entry type, String... args) {
+		try {
+			out.writeByte(type.ordinal());
+			out.writeInt(ctx.step);
+			out.writeBoolean(ctx.notifyingStep);
+
+			for (String arg : args) {
+				out.writeBoolean(arg != null);
+
+				if (arg != null)
+					out.writeUTF(arg);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
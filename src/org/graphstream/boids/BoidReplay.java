@@ -0,0 +1,281 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Regenerate a boid simulation from a {@link BoidJournal}.
+ * 
+ * <p>
+ * The replay creates the simulation with the recorded random seed, then runs
+ * it step by step, applying the recorded changes at the end of the step they
+ * are stamped with. Nothing is slowed down, the sleep time of the simulation
+ * is not used.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class BoidReplay {
+	/**
+	 * The journal.
+	 */
+	protected DataInputStream in;
+
+	/**
+	 * The regenerated simulation.
+	 */
+	protected BoidGraph ctx;
+
+	/**
+	 * Kind of the next entry to apply.
+	 */
+	protected BoidJournal.Entry next;
+
+	/**
+	 * Step of the next entry to apply.
+	 */
+	protected int nextStep;
+
+	/**
+	 * True if the next entry was made by a listener when its step began.
+	 */
+	protected boolean nextInStep;
+
+	/**
+	 * Version of the journal format.
+	 */
+	protected int version;
+
+	/**
+	 * Replay a journal in a new boid graph.
+	 * 
+	 * @param in
+	 *            The journal.
+	 * @throws IOException
+	 *             if something wrong happens with io or if the journal format
+	 *             is not supported.
+	 */
+	public BoidReplay(InputStream in) throws IOException {
+		this(new BoidGraph(), in);
+	}
+
+	/**
+	 * Replay a journal in the given boid graph. The graph must be in the same
+	 * state as the recorded one when its journal was set, usually just
+	 * created.
+	 * 
+	 * @param ctx
+	 *            The graph.
+	 * @param in
+	 *            The journal.
+	 * @throws IOException
+	 *             if something wrong happens with io or if the journal format
+	 *             is not supported.
+	 */
+	public BoidReplay(BoidGraph ctx, InputStream in) throws IOException {
+		this.in = new DataInputStream(in);
+		this.ctx = ctx;
+
+		if (this.in.readInt() != BoidJournal.MAGIC)
+			throw new IOException("not a boids journal");
+
+		version = this.in.readInt();
+
+		if (version < 1 || version > BoidJournal.VERSION)
+			throw new IOException(String.format(
+					"unsupported journal version %d", version));
+
+		ctx.setRandomSeed(this.in.readLong());
+
+		readNext();
+		applyPending();
+
+		ctx.addBoidGraphListener(new StepListener());
+	}
+
+	/**
+	 * The regenerated simulation.
+	 * 
+	 * @return The boid graph.
+	 */
+	public BoidGraph getBoidGraph() {
+		return ctx;
+	}
+
+	/**
+	 * True if the recorded run is completely replayed.
+	 */
+	public boolean isOver() {
+		return next == BoidJournal.Entry.END && ctx.step >= nextStep;
+	}
+
+	/**
+	 * Run one step of the simulation, then apply the changes recorded for this
+	 * step.
+	 * 
+	 * @return False if the recorded run was already over, in which case
+	 *         nothing is done.
+	 * @throws IOException
+	 *             if something wrong happens with io.
+	 */
+	public boolean step() throws IOException {
+		if (isOver())
+			return false;
+
+		ctx.step();
+		applyPending();
+
+		return true;
+	}
+
+	/**
+	 * Replay the whole recorded run.
+	 * 
+	 * @throws IOException
+	 *             if something wrong happens with io.
+	 */
+	public void run() throws IOException {
+		while (step())
+			;
+	}
+
+	/**
+	 * Apply all the entries stamped with the current step.
+	 */
+	protected void applyPending() throws IOException {
+		while (next != BoidJournal.Entry.END && nextStep <= ctx.step) {
+			apply(next);
+			readNext();
+		}
+	}
+
+	/**
+	 * Apply the entries made by listeners when the current step began.
+	 */
+	protected void applyInStep() throws IOException {
+		while (next != BoidJournal.Entry.END
+				&& (nextStep < ctx.step || nextStep == ctx.step && nextInStep)) {
+			apply(next);
+			readNext();
+		}
+	}
+
+	/**
+	 * Read the header of the next entry. A truncated journal ends at the step
+	 * of its last complete entry.
+	 */
+	protected void readNext() throws IOException {
+		try {
+			next = BoidJournal.Entry.values()[in.readUnsignedByte()];
+			nextStep = in.readInt();
+			nextInStep = version >= 3 && in.readBoolean();
+		} catch (EOFException e) {
+			next = BoidJournal.Entry.END;
+			nextStep = ctx.step;
+		}
+	}
+
+	/**
+	 * Read the arguments of an entry and apply it.
+	 */
+	protected void apply(BoidJournal.Entry entry) throws IOException {
+		String name;
+		BoidSpecies species;
+
+		switch (entry) {
+		case CONFIGURATION:
+			byte[] dgs = new byte[in.readInt()];
+			in.readFully(dgs);
+			ctx.loadDGSConfiguration(new ByteArrayInputStream(dgs));
+			break;
+		case SET:
+			ctx.set(readString(), readString());
+			break;
+		case SPECIES_SET:
+			species = ctx.getSpecies(readString());
+			species.set(readString(), readString());
+			break;
+		case SPECIES_CREATED:
+			name = readString();
+			ctx.getOrCreateSpecies(name, readString());
+			break;
+		case SPECIES_DELETED:
+			ctx.deleteSpecies(readString());
+			break;
+		case BOID_ADDED:
+			Boid b = ctx.addNode(readString());
+			b.getSpecies().currentIndex = in.readInt();
+			break;
+		case BOID_REMOVED:
+			ctx.removeNode(readString());
+			break;
+		case CHECKPOINT:
+			byte[] checkpoint = new byte[in.readInt()];
+			in.readFully(checkpoint);
+			BoidCheckpoint.read(ctx, new ByteArrayInputStream(checkpoint));
+			break;
+		case END:
+			break;
+		}
+	}
+
+	/**
+	 * Read a string argument of an entry, possibly null since version 2.
+	 */
+	protected String readString() throws IOException {
+		if (version >= 2 && !in.readBoolean())
+			return null;
+
+		return in.readUTF();
+	}
+
+	/**
+	 * Applies, when a step begins, the changes recorded at that point.
+	 */
+	private class StepListener implements BoidGraphListener {
+		public void step(double time) {
+			try {
+				applyInStep();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		public void boidAdded(Boid boid) {
+		}
+
+		public void boidDeleted(Boid boid) {
+		}
+	}
+}
@@ -29,11 +29,14 @@
 package org.graphstream.boids;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 import org.graphstream.boids.BoidGraph;
-import org.graphstream.graph.Node;
+import org.graphstream.boids.rules.SteeringPipeline;
 
 /**
  * Parameters for each boids species.
@@ -46,7 +49,41 @@ public class BoidSpecies implements Iterable<Boid> {
 	 * Kinds of parameters.
 	 */
 	public static enum Parameter {
-		COUNT, ANGLE_OF_VIEW, VIEW_ZONE, SPEED_FACTOR, MAX_SPEED, MIN_SPEED, DIRECTION_FACTOR, ATTRACTION_FACTOR, REPULSION_FACTOR, INERTIA, FEAR_FACTOR, ADD_SPECIES_NAME_IN_UI_CLASS, MAX_NEIGHBORHOOD
+		COUNT, ANGLE_OF_VIEW, VIEW_ZONE, SPEED_FACTOR, MAX_SPEED, MIN_SPEED, DIRECTION_FACTOR, ATTRACTION_FACTOR, REPULSION_FACTOR, INERTIA, FEAR_FACTOR, ADD_SPECIES_NAME_IN_UI_CLASS, MAX_NEIGHBORHOOD, POOL_SIZE, NEIGHBORHOOD, SAMPLE_SIZE, SEPARATION_ZONE, ALIGNMENT_ZONE, COHESION_ZONE, RULES, KERNEL
+	}
+
+	/**
+	 * Which of the visible boids are integrated in the forces.
+	 */
+	public static enum Neighborhood {
+		/**
+		 * All the visible boids, the default.
+		 */
+		VISIBLE,
+		/**
+		 * Only the {@link Parameter#MAX_NEIGHBORHOOD} nearest visible boids.
+		 */
+		NEAREST,
+		/**
+		 * A uniform random sample of {@link Parameter#SAMPLE_SIZE} visible
+		 * boids.
+		 */
+		SAMPLED
+	}
+
+	/**
+	 * How the forces are evaluated.
+	 */
+	public static enum Kernel {
+		/**
+		 * With the math functions of the JDK.
+		 */
+		EXACT,
+		/**
+		 * With constants computed once per step, squared distances and
+		 * angles, and an approximated logarithm, see {@link FastMath}.
+		 */
+		FAST
 	}
 
 	/**
@@ -132,9 +169,15 @@ public class BoidSpecies implements Iterable<Boid> {
 	protected Color color = new Color(1, 0, 0);
 
 	/**
-	 * Collection of boids for this species.
+	 * Collection of boids for this species. Each boid knows its position in
+	 * the list, so that removal only moves the last boid in its place.
 	 */
-	protected HashMap<String, Boid> boids;
+	protected ArrayList<Boid> boids;
+
+	/**
+	 * Dense index of the species, -1 when not in the graph.
+	 */
+	int handle = -1;
 
 	/**
 	 * Specify a CSS class for the species name for the GraphStream viewer.
@@ -147,9 +190,11 @@ public class BoidSpecies implements Iterable<Boid> {
 	protected int currentIndex = 0;
 
 	/**
-	 * Allow to create unique identifiers for boids.
+	 * Allow to create unique identifiers for boids. This is given by the
+	 * graph rather than taken from the clock so that identifiers are the same
+	 * from one run to another.
 	 */
-	protected long timestamp = System.nanoTime();
+	protected long timestamp;
 
 	/**
 	 * Handle the addition or removal of boids.
@@ -158,8 +203,66 @@ public class BoidSpecies implements Iterable<Boid> {
 
 	protected int initialCount = 0;
 
+	/**
+	 * Maximum number of dead boids kept for reuse, zero to disable pooling.
+	 */
+	protected int poolSize = 0;
+
+	/**
+	 * Dead boids waiting to be reused, by identifier, the oldest first.
+	 */
+	protected LinkedHashMap<String, Boid> pool = new LinkedHashMap<String, Boid>();
+
 	int maxNeighborhood = 20;
 
+	/**
+	 * Which of the visible boids are integrated in the forces.
+	 */
+	protected Neighborhood neighborhood = Neighborhood.VISIBLE;
+
+	/**
+	 * Number of visible boids integrated in the sampled neighborhood mode.
+	 */
+	protected int sampleSize = 10;
+
+	/**
+	 * Distance under which visible boids repulse a boid, zero for the view
+	 * zone.
+	 */
+	protected double separationZone;
+
+	/**
+	 * Distance under which a boid aligns with visible boids, zero for the
+	 * view zone.
+	 */
+	protected double alignmentZone;
+
+	/**
+	 * Distance under which visible boids attract a boid, zero for the view
+	 * zone.
+	 */
+	protected double cohesionZone;
+
+	/**
+	 * The steering rules, null for the classic boid forces.
+	 */
+	protected SteeringPipeline rules;
+
+	/**
+	 * How the forces are evaluated.
+	 */
+	protected Kernel kernel = Kernel.EXACT;
+
+	/**
+	 * Parameters used by the forces computation during the actual step.
+	 */
+	protected SpeciesParameters parameters;
+
+	/**
+	 * True if a parameter changed since the last {@link #freeze()}.
+	 */
+	protected boolean parametersChanged = true;
+
 	/**
 	 * New default species with a random color.
 	 * 
@@ -169,9 +272,10 @@ public class BoidSpecies implements Iterable<Boid> {
 	 *            final name of this species
 	 */
 	public BoidSpecies(BoidGraph ctx, String name) {
-		this.boids = new HashMap<String, Boid>();
+		this.boids = new ArrayList<Boid>();
 		this.ctx = ctx;
 		this.name = name;
+		this.timestamp = ctx.speciesSerial++;
 
 		//
 		// Default parameters
@@ -218,10 +322,49 @@ public class BoidSpecies implements Iterable<Boid> {
 	 *             if the enum constant does not exist
 	 */
 	public void set(String p, String val) throws IllegalArgumentException {
+		if (p.startsWith("interaction.")) {
+			setInteraction(p, val);
+			return;
+		}
+
 		Parameter param = Parameter.valueOf(p.toUpperCase());
 		set(param, val);
 	}
 
+	/**
+	 * Set a coefficient of the interaction of this species with another one,
+	 * given as "interaction.other.coefficient", see
+	 * {@link SpeciesInteractions}.
+	 */
+	protected void setInteraction(String p, String val) {
+		SpeciesInteractions.Coefficient c = interactionCoefficient(p);
+		String other = interactionSpecies(p);
+
+		if (BoidGraph.VERBOSE)
+			System.out.printf("set %s of %s to %s\n", p, name, val);
+
+		ctx.interactions.set(name, other, c, val == null ? Double.NaN
+				: Double.parseDouble(val));
+
+		if (ctx.isJournaling())
+			ctx.journal.speciesParameterChanged(this, p, val);
+	}
+
+	private static String interactionSpecies(String p) {
+		int dot = p.lastIndexOf('.');
+
+		if (dot <= "interaction.".length())
+			throw new IllegalArgumentException(p);
+
+		return p.substring("interaction.".length(), dot);
+	}
+
+	private static SpeciesInteractions.Coefficient interactionCoefficient(
+			String p) {
+		return SpeciesInteractions.Coefficient.valueOf(p.substring(
+				p.lastIndexOf('.') + 1).toUpperCase());
+	}
+
 	/**
 	 * Utility function to set parameter from an enum constant and a string
 	 * value.
@@ -279,12 +422,157 @@ public class BoidSpecies implements Iterable<Boid> {
 				maxNeighborhood = Integer.MAX_VALUE;
 
 			break;
+		case POOL_SIZE:
+			setPoolSize(Integer.parseInt(val));
+			break;
+		case NEIGHBORHOOD:
+			neighborhood = Neighborhood.valueOf(val.toUpperCase());
+			break;
+		case SAMPLE_SIZE:
+			sampleSize = (int) Double.parseDouble(val);
+
+			if (sampleSize <= 0)
+				sampleSize = Integer.MAX_VALUE;
+
+			break;
+		case SEPARATION_ZONE:
+			separationZone = Double.parseDouble(val);
+			break;
+		case ALIGNMENT_ZONE:
+			alignmentZone = Double.parseDouble(val);
+			break;
+		case COHESION_ZONE:
+			cohesionZone = Double.parseDouble(val);
+			break;
+		case RULES:
+			val = val.trim();
+			rules = val.length() == 0 || val.equals("classic") ? null
+					: SteeringPipeline.parse(val);
+			break;
+		case KERNEL:
+			kernel = Kernel.valueOf(val.toUpperCase());
+			break;
+		}
+
+		parametersChanged = true;
+
+		if (ctx.isJournaling())
+			ctx.journal.speciesParameterChanged(this, p.name(), val);
+	}
+
+	/**
+	 * Same than {@link #get(Parameter)} but the enum constant is given as a
+	 * string.
+	 * 
+	 * @param p
+	 *            name of the enum constant associated with a parameter, case
+	 *            independent
+	 * @return string value of the parameter
+	 * @throws IllegalArgumentException
+	 *             if the enum constant does not exist
+	 */
+	public String get(String p) throws IllegalArgumentException {
+		if (p.startsWith("interaction.")) {
+			double v = ctx.interactions.getExplicit(name,
+					interactionSpecies(p), interactionCoefficient(p));
+
+			return Double.isNaN(v) ? null : Double.toString(v);
+		}
+
+		Parameter param = Parameter.valueOf(p.toUpperCase());
+		return get(param);
+	}
+
+	/**
+	 * Current value of a parameter, formatted so that it can be given back to
+	 * {@link #set(Parameter, String)}.
+	 * 
+	 * @param p
+	 *            an enum constant associated with a parameter
+	 * @return string value of the parameter
+	 */
+	public String get(Parameter p) {
+		switch (p) {
+		case COUNT:
+			return Integer.toString(initialCount);
+		case VIEW_ZONE:
+			return Double.toString(viewZone);
+		case SPEED_FACTOR:
+			return Double.toString(speedFactor);
+		case MAX_SPEED:
+			return Double.toString(maxSpeed);
+		case MIN_SPEED:
+			return Double.toString(minSpeed);
+		case DIRECTION_FACTOR:
+			return Double.toString(directionFactor);
+		case ATTRACTION_FACTOR:
+			return Double.toString(attractionFactor);
+		case REPULSION_FACTOR:
+			return Double.toString(repulsionFactor);
+		case INERTIA:
+			return Double.toString(inertia);
+		case FEAR_FACTOR:
+			return Double.toString(fearFactor);
+		case ANGLE_OF_VIEW:
+			return Double.toString(angleOfView);
+		case ADD_SPECIES_NAME_IN_UI_CLASS:
+			return Boolean.toString(addSpeciesNameInUIClass);
+		case MAX_NEIGHBORHOOD:
+			return Integer.toString(maxNeighborhood == Integer.MAX_VALUE ? 0
+					: maxNeighborhood);
+		case POOL_SIZE:
+			return Integer.toString(poolSize);
+		case NEIGHBORHOOD:
+			return neighborhood.name().toLowerCase();
+		case SAMPLE_SIZE:
+			return Integer.toString(sampleSize == Integer.MAX_VALUE ? 0
+					: sampleSize);
+		case SEPARATION_ZONE:
+			return Double.toString(separationZone);
+		case ALIGNMENT_ZONE:
+			return Double.toString(alignmentZone);
+		case COHESION_ZONE:
+			return Double.toString(cohesionZone);
+		case RULES:
+			return rules == null ? "classic" : rules.toString();
+		case KERNEL:
+			return kernel.name().toLowerCase();
 		}
+
+		return null;
+	}
+
+	/**
+	 * Take a copy of the actual parameters, that will be used by the forces
+	 * computation until the next call. This is called by the graph at the
+	 * beginning of each step.
+	 */
+	public void freeze() {
+		if (parametersChanged || parameters == null) {
+			parameters = new SpeciesParameters(this);
+			parametersChanged = false;
+			ctx.interactions.invalidate();
+		}
+	}
+
+	/**
+	 * The parameters frozen for the actual step. Changes made to the species
+	 * during a step are only visible here at the next step.
+	 * 
+	 * @return The frozen parameters.
+	 */
+	public SpeciesParameters getParameters() {
+		if (parameters == null)
+			freeze();
+
+		return parameters;
 	}
 
 	/**
 	 * Create a new unique id specific to this species. It can be used to create
-	 * a new boid.
+	 * a new boid. This is never the id of a pooled boid : when pooling is
+	 * enabled, ids of dead boids are reused by {@link #createBoid()} and
+	 * {@link BoidGraph#addBoid(BoidSpecies)}, not by this method.
 	 * 
 	 * @return a new unique id
 	 */
@@ -293,13 +581,27 @@ public class BoidSpecies implements Iterable<Boid> {
 	}
 
 	/**
-	 * Create a new boid with an automatic id created using
-	 * {@link #createNewId()}.
+	 * Id of the next boid of this species : the one of the oldest pooled boid
+	 * if any, else a new one. The pooled boid stays in the pool until it is
+	 * created with {@link #createBoid(String)}, so the boid should be created
+	 * right away.
+	 * 
+	 * @return the id of the next boid
+	 */
+	protected String nextId() {
+		if (pool.size() > 0)
+			return pool.keySet().iterator().next();
+
+		return createNewId();
+	}
+
+	/**
+	 * Create a new boid with an automatic id, reusing a pooled boid if any.
 	 * 
 	 * @return a new boid
 	 */
 	public Boid createBoid() {
-		return createBoid(createNewId());
+		return createBoid(nextId());
 	}
 
 	/**
@@ -310,11 +612,75 @@ public class BoidSpecies implements Iterable<Boid> {
 	 * @return the new boid
 	 */
 	public Boid createBoid(String id) {
+		Boid b = pool.remove(id);
+
+		if (b != null) {
+			b.recycle();
+			return b;
+		}
+
 		return new Boid(ctx, this, id);
 	}
 
 	void register(Boid b) {
-		boids.put(b.getId(), b);
+		b.speciesSlot = boids.size();
+		boids.add(b);
+		pop.boidAdded(b);
+	}
+
+	/**
+	 * Dense index of the species in the graph. Handles are allocated from zero
+	 * and reused once a species is deleted, so that they can index arrays. See
+	 * {@link BoidGraph#getSpecies(int)}.
+	 * 
+	 * @return The handle, or -1 if the species was deleted.
+	 */
+	public int getHandle() {
+		return handle;
+	}
+
+	/**
+	 * Maximum number of dead boids kept for reuse.
+	 * 
+	 * @return The pool size, zero if pooling is disabled.
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * Change the maximum number of dead boids kept for reuse.
+	 * 
+	 * <p>
+	 * When a boid of this species is removed, it is kept with its forces
+	 * object if the pool is not full. The next boid created by
+	 * {@link #createBoid()} or {@link BoidGraph#addBoid(BoidSpecies)} is then
+	 * the pooled one, with the same id : its attributes are removed, its
+	 * forces are reset by the forces factory, and it gets a new random
+	 * position and direction, as a new boid would. A recycled boid therefore
+	 * reuses the identifier of a dead one.
+	 * </p>
+	 * 
+	 * <p>
+	 * The same random numbers are drawn with or without a pool, but the
+	 * identifiers differ, and with them the order of the edges and the order
+	 * in which the forces system computes the boids. Since a boid sees the
+	 * direction its neighbors computed before it in the same step, a run with
+	 * a pool does not give the same trajectories as a run without one.
+	 * </p>
+	 * 
+	 * @param size
+	 *            The pool size, zero to disable pooling.
+	 */
+	public void setPoolSize(int size) {
+		poolSize = Math.max(size, 0);
+
+		Iterator<Boid> it = pool.values().iterator();
+
+		while (pool.size() > poolSize) {
+			it.next();
+			it.remove();
+		}
 	}
 
 	void checkClasses(Boid b) {
@@ -330,8 +696,44 @@ public class BoidSpecies implements Iterable<Boid> {
 		}
 	}
 
+	/**
+	 * Put the boids of the species back in a saved order, with their pending
+	 * demographic events. This is used when restoring a simulation.
+	 */
+	void restoreDemography(Boid[] bySlot, int[] births, int[] deaths,
+			int[] reproduces) {
+		for (int slot = 0; slot < bySlot.length; slot++) {
+			boids.set(slot, bySlot[slot]);
+			bySlot[slot].speciesSlot = slot;
+		}
+
+		pop.restore(bySlot, births, deaths, reproduces);
+	}
+
 	void unregister(Boid b) {
-		boids.remove(b.getId());
+		int slot = b.speciesSlot;
+
+		if (slot < 0)
+			return;
+
+		//
+		// The demographic manager is indexed by position in the species, it
+		// is told before the last boid moves.
+		//
+
+		pop.boidDeleted(b);
+
+		Boid last = boids.remove(boids.size() - 1);
+
+		if (last != b) {
+			boids.set(slot, last);
+			last.speciesSlot = slot;
+		}
+
+		b.speciesSlot = -1;
+
+		if (pool.size() < poolSize)
+			pool.put(b.getId(), b);
 
 		/*
 		 * if (addSpeciesNameInUIClass) { String uiClass =
@@ -376,8 +778,8 @@ public class BoidSpecies implements Iterable<Boid> {
 	public void populate() {
 		int count = initialCount - boids.size();
 
-		while (count-- > 0)
-			ctx.addNode(createNewId());
+		if (count > 0)
+			ctx.addBoids(this, count);
 	}
 
 	public void setInitialCount(int count) {
@@ -400,6 +802,109 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setViewZone(double viewZone) {
 		this.viewZone = viewZone;
+		parametersChanged = true;
+	}
+
+	/**
+	 * Distance under which visible boids repulse a boid, zero for the view
+	 * zone.
+	 * 
+	 * @return
+	 */
+	public double getSeparationZone() {
+		return separationZone;
+	}
+
+	/**
+	 * Change the distance under which visible boids repulse a boid. Boids
+	 * are searched once, at the largest of the view zone and the zones of
+	 * the rules.
+	 * 
+	 * @param separationZone
+	 */
+	public void setSeparationZone(double separationZone) {
+		this.separationZone = separationZone;
+		parametersChanged = true;
+	}
+
+	/**
+	 * Distance under which a boid aligns with visible boids, zero for the
+	 * view zone.
+	 * 
+	 * @return
+	 */
+	public double getAlignmentZone() {
+		return alignmentZone;
+	}
+
+	/**
+	 * Change the distance under which a boid aligns with visible boids.
+	 * 
+	 * @param alignmentZone
+	 */
+	public void setAlignmentZone(double alignmentZone) {
+		this.alignmentZone = alignmentZone;
+		parametersChanged = true;
+	}
+
+	/**
+	 * Distance under which visible boids attract a boid, zero for the view
+	 * zone.
+	 * 
+	 * @return
+	 */
+	public double getCohesionZone() {
+		return cohesionZone;
+	}
+
+	/**
+	 * Change the distance under which visible boids attract a boid.
+	 * 
+	 * @param cohesionZone
+	 */
+	public void setCohesionZone(double cohesionZone) {
+		this.cohesionZone = cohesionZone;
+		parametersChanged = true;
+	}
+
+	/**
+	 * The steering rules.
+	 * 
+	 * @return The rules, null for the classic boid forces.
+	 */
+	public SteeringPipeline getRules() {
+		return rules;
+	}
+
+	/**
+	 * Change the steering rules.
+	 * 
+	 * @param rules
+	 *            The rules, null for the classic boid forces.
+	 */
+	public void setRules(SteeringPipeline rules) {
+		this.rules = rules;
+		parametersChanged = true;
+	}
+
+	/**
+	 * How the forces are evaluated.
+	 * 
+	 * @return The kernel.
+	 */
+	public Kernel getKernel() {
+		return kernel;
+	}
+
+	/**
+	 * Change how the forces are evaluated.
+	 * 
+	 * @param kernel
+	 *            The kernel.
+	 */
+	public void setKernel(Kernel kernel) {
+		this.kernel = kernel;
+		parametersChanged = true;
 	}
 
 	/**
@@ -421,6 +926,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setSpeedFactor(double speedFactor) {
 		this.speedFactor = speedFactor;
+		parametersChanged = true;
 	}
 
 	/**
@@ -439,6 +945,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setMaxSpeed(double maxSpeed) {
 		this.maxSpeed = maxSpeed;
+		parametersChanged = true;
 	}
 
 	/**
@@ -457,6 +964,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setMinSpeed(double minSpeed) {
 		this.minSpeed = minSpeed;
+		parametersChanged = true;
 	}
 
 	/**
@@ -478,6 +986,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setDirectionFactor(double directionFactor) {
 		this.directionFactor = directionFactor;
+		parametersChanged = true;
 	}
 
 	/**
@@ -499,6 +1008,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setAttractionFactor(double attractionFactor) {
 		this.attractionFactor = attractionFactor;
+		parametersChanged = true;
 	}
 
 	/**
@@ -520,6 +1030,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setRepulsionFactor(double repulsionFactor) {
 		this.repulsionFactor = repulsionFactor;
+		parametersChanged = true;
 	}
 
 	/**
@@ -540,6 +1051,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setInertia(double inertia) {
 		this.inertia = inertia;
+		parametersChanged = true;
 	}
 
 	/**
@@ -559,6 +1071,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setFearFactor(double fearFactor) {
 		this.fearFactor = fearFactor;
+		parametersChanged = true;
 	}
 
 	/**
@@ -599,6 +1112,7 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void setAngleOfView(double aov) {
 		angleOfView = aov;
+		parametersChanged = true;
 	}
 
 	/**
@@ -629,15 +1143,9 @@ public class BoidSpecies implements Iterable<Boid> {
 	 */
 	public void release() {
 		pop.release();
-
-		Iterator<Node> i = ctx.getNodeIterator();
-
-		while (i.hasNext()) {
-			Boid b = (Boid) i.next();
-			if (b.getSpecies() == this) {
-				i.remove();
-			}
-		}
+		poolSize = 0;
+		ctx.removeBoids(new ArrayList<Boid>(boids));
+		pool.clear();
 	}
 
 	/*
@@ -646,6 +1154,6 @@ public class BoidSpecies implements Iterable<Boid> {
 	 * @see java.lang.Iterable#iterator()
 	 */
 	public Iterator<Boid> iterator() {
-		return boids.values().iterator();
+		return Collections.unmodifiableList(boids).iterator();
 	}
 }
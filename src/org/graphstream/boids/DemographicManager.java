@@ -28,17 +28,41 @@
  */
 package org.graphstream.boids;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
 
 /**
  * Handles the appearance and disappearance of boids.
  * 
+ * <p>
+ * The manager does not scan the whole population at each step when it can
+ * avoid it. When a probability only depends on the age of the boids (see
+ * {@link Probability.AgeOnly}), the date of the next event of each boid is
+ * drawn once, when the boid is registered or after the event occurred, and
+ * stored in a priority queue. A check then only pops the events of the current
+ * date. Drawing the date of the first success of a sequence of independent
+ * Bernoulli trials is statistically equivalent to drawing each trial, so the
+ * population follows the same law as with a per-step draw, but the sequence of
+ * random numbers is not the same.
+ * </p>
+ * 
+ * <p>
+ * Other probabilities may depend on the state of the boid and are still drawn
+ * at each step, for each boid. The state of the boids is kept in primitive
+ * arrays indexed by a slot, see {@link #slotOf(Boid)}. The manager of a
+ * species uses the dense position of the boid in its species, so that its
+ * arrays and scans are proportional to the species population.
+ * </p>
+ * 
  * @author Guilhelm Savin
  * @author Antoine Dutot
  */
 public class DemographicManager implements BoidGraphListener {
-	
+	/**
+	 * Date used for events that never occur.
+	 */
+	protected static final int NEVER = Integer.MAX_VALUE;
+
 	/**
 	 * The boid graph.
 	 */
@@ -63,12 +87,6 @@ public class DemographicManager implements BoidGraphListener {
 	 */
 	protected LinkedList<Boid> futureParents = new LinkedList<Boid>();
 	
-	/**
-	 * Date of birth of each active boid, according to {@link #currentDate}.
-	 * @see #currentDate
-	 */
-	protected HashMap<Boid, Integer> birthdays = new HashMap<Boid, Integer>();
-	
 	/**
 	 * Probability function for boid reproduction.
 	 */
@@ -79,16 +97,98 @@ public class DemographicManager implements BoidGraphListener {
 	 */
 	protected Probability deathProbability;
 
+	/**
+	 * Sampler of the death dates, null if death is drawn at each step.
+	 */
+	protected Hazard deathHazard;
+
+	/**
+	 * Sampler of the reproduction dates, null if reproduction is drawn at each
+	 * step.
+	 */
+	protected Hazard reproduceHazard;
+
+	/**
+	 * Boid of each slot, null for slots not used. The arrays below are
+	 * indexed the same way.
+	 */
+	protected Boid[] boids = new Boid[16];
+
+	/**
+	 * Date of birth of the boid in each slot.
+	 */
+	protected int[] birthDates = new int[16];
+
+	/**
+	 * Date of death of the boid in each slot, when death dates are sampled.
+	 */
+	protected int[] deathDates = new int[16];
+
+	/**
+	 * Date of the next reproduction of the boid in each slot, when
+	 * reproduction dates are sampled.
+	 */
+	protected int[] reproduceDates = new int[16];
+
+	/**
+	 * Incremented each time a slot is reused, so that events scheduled for a
+	 * previous occupant can be recognized.
+	 */
+	protected int[] generations = new int[16];
+
+	/**
+	 * One more than the greatest slot ever used.
+	 */
+	protected int slotCount = 0;
+
+	/**
+	 * Number of boids handled.
+	 */
+	protected int population = 0;
+
+	/**
+	 * Pending events, ordered by date.
+	 */
+	protected EventQueue events = new EventQueue();
+
+	/**
+	 * True while {@link #check()} runs. Boids born during a check are first
+	 * checked at the next date.
+	 */
+	protected boolean checking = false;
+
 	public DemographicManager(BoidGraph ctx) {
 		this(ctx, new Probability.ConstantProbability(1), new Probability.DeathProbability());
 	}
 
 	public DemographicManager(BoidGraph ctx, Probability reproduceProbability, Probability deathProbability) {
+		this(ctx, reproduceProbability, deathProbability, true);
+	}
+
+	/**
+	 * New manager.
+	 * 
+	 * @param ctx
+	 *            The boid graph.
+	 * @param reproduceProbability
+	 *            Probability function for boid reproduction.
+	 * @param deathProbability
+	 *            Probability function for boid death.
+	 * @param listen
+	 *            If true, the manager is registered as a listener of the graph
+	 *            and receives every boid. Else boids must be given to it by
+	 *            {@link #boidAdded(Boid)} and {@link #boidDeleted(Boid)}, and
+	 *            {@link #step(double)} must be called.
+	 */
+	protected DemographicManager(BoidGraph ctx, Probability reproduceProbability, Probability deathProbability, boolean listen) {
 		this.ctx = ctx;
 		this.reproduceProbability = reproduceProbability;
 		this.deathProbability = deathProbability;
+		this.reproduceHazard = Hazard.create(ctx, reproduceProbability);
+		this.deathHazard = Hazard.create(ctx, deathProbability);
 
-		ctx.addBoidGraphListener(this);
+		if (listen)
+			ctx.addBoidGraphListener(this);
 	}
 
 	/**
@@ -97,6 +197,8 @@ public class DemographicManager implements BoidGraphListener {
 	 */
 	public void setReproduceCondition(Probability rc) {
 		this.reproduceProbability = rc;
+		this.reproduceHazard = Hazard.create(ctx, rc);
+		reschedule();
 	}
 
 	/**
@@ -105,6 +207,149 @@ public class DemographicManager implements BoidGraphListener {
 	 */
 	public void setDeathProbability(Probability dp) {
 		this.deathProbability = dp;
+		this.deathHazard = Hazard.create(ctx, dp);
+		reschedule();
+	}
+
+	/**
+	 * The current date of this manager, that is the number of checks done.
+	 * 
+	 * @return The current date.
+	 */
+	public int getCurrentDate() {
+		return currentDate;
+	}
+
+	/**
+	 * Change the current date. This is used when restoring a simulation.
+	 * 
+	 * @param date
+	 *            The new date.
+	 */
+	public void setCurrentDate(int date) {
+		this.currentDate = date;
+		reschedule();
+	}
+
+	/**
+	 * Date of birth of a boid handled by this manager.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @return The date of birth, or -1 if the boid is not handled here.
+	 */
+	public int getBirthDate(Boid b) {
+		return handles(b) ? birthDates[slotOf(b)] : -1;
+	}
+
+	/**
+	 * Force the date of birth of a boid already handled by this manager. This
+	 * is used when restoring a simulation.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @param date
+	 *            Its date of birth.
+	 */
+	public void setBirthDate(Boid b, int date) {
+		if (handles(b)) {
+			birthDates[slotOf(b)] = date;
+			schedule(slotOf(b));
+		}
+	}
+
+	/**
+	 * Date of the pending death of a boid, when death dates are sampled.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @return The date, {@link Integer#MAX_VALUE} if it never dies, or -1 if
+	 *         the boid is not handled here.
+	 */
+	public int getDeathDate(Boid b) {
+		return handles(b) ? deathDates[slotOf(b)] : -1;
+	}
+
+	/**
+	 * Date of the pending reproduction of a boid, when reproduction dates are
+	 * sampled.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @return The date, {@link Integer#MAX_VALUE} if it never reproduces
+	 *         again, or -1 if the boid is not handled here.
+	 */
+	public int getReproduceDate(Boid b) {
+		return handles(b) ? reproduceDates[slotOf(b)] : -1;
+	}
+
+	/**
+	 * Replace all the state of this manager, without drawing any date. This
+	 * is used when restoring a simulation.
+	 * 
+	 * @param bySlot
+	 *            The boids, by slot.
+	 * @param births
+	 *            Their dates of birth.
+	 * @param deaths
+	 *            Their pending death dates.
+	 * @param reproduces
+	 *            Their pending reproduction dates.
+	 */
+	protected void restore(Boid[] bySlot, int[] births, int[] deaths,
+			int[] reproduces) {
+		int n = bySlot.length;
+
+		if (n > boids.length)
+			grow(n);
+
+		Arrays.fill(boids, null);
+		events.clear();
+
+		for (int slot = 0; slot < n; slot++) {
+			boids[slot] = bySlot[slot];
+			birthDates[slot] = births[slot];
+			deathDates[slot] = deaths[slot];
+			reproduceDates[slot] = reproduces[slot];
+			generations[slot]++;
+
+			if (deathHazard != null && deaths[slot] != NEVER)
+				events.push(deaths[slot], slot, true, generations[slot]);
+
+			if (reproduceHazard != null && reproduces[slot] != NEVER)
+				events.push(reproduces[slot], slot, false, generations[slot]);
+		}
+
+		population = n;
+		slotCount = n;
+	}
+
+	/**
+	 * Number of boids handled by this manager.
+	 * 
+	 * @return The population size.
+	 */
+	public int getPopulation() {
+		return population;
+	}
+
+	/**
+	 * Slot of a boid in the arrays of this manager, its handle by default.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @return The slot, negative if the boid has none.
+	 */
+	protected int slotOf(Boid b) {
+		return b.getHandle();
+	}
+
+	/**
+	 * Is a boid handled by this manager ?
+	 */
+	protected boolean handles(Boid b) {
+		int slot = slotOf(b);
+		return slot >= 0 && slot < slotCount && boids[slot] == b;
 	}
 
 	/**
@@ -112,7 +357,22 @@ public class DemographicManager implements BoidGraphListener {
 	 * @param b The boid to add.
 	 */
 	protected void register(Boid b) {
-		birthdays.put(b, currentDate);
+		int slot = slotOf(b);
+
+		if (slot < 0 || handles(b))
+			return;
+
+		if (slot >= boids.length)
+			grow(Math.max(slot + 1, boids.length * 2));
+
+		if (slot >= slotCount)
+			slotCount = slot + 1;
+
+		population++;
+		boids[slot] = b;
+		birthDates[slot] = currentDate;
+		generations[slot]++;
+		schedule(slot);
 	}
 
 	/**
@@ -120,7 +380,51 @@ public class DemographicManager implements BoidGraphListener {
 	 * @param b The boid to remove.
 	 */
 	protected void unregister(Boid b) {
-		birthdays.remove(b);
+		if (!handles(b))
+			return;
+
+		int slot = slotOf(b);
+
+		population--;
+		boids[slot] = null;
+		generations[slot]++;
+		vacate(slot);
+	}
+
+	/**
+	 * Called once the boid of a slot is unregistered. Does nothing by
+	 * default, handles being freed by the graph.
+	 * 
+	 * @param slot
+	 *            The slot just emptied.
+	 */
+	protected void vacate(int slot) {
+	}
+
+	/**
+	 * Move the boid of a slot and its pending events to an empty slot. Its
+	 * dates are kept, not drawn again.
+	 * 
+	 * @param from
+	 *            The slot of the boid.
+	 * @param to
+	 *            The empty slot.
+	 */
+	protected void move(int from, int to) {
+		boids[to] = boids[from];
+		birthDates[to] = birthDates[from];
+		deathDates[to] = deathDates[from];
+		reproduceDates[to] = reproduceDates[from];
+		generations[to]++;
+
+		boids[from] = null;
+		generations[from]++;
+
+		if (deathHazard != null && deathDates[to] != NEVER)
+			events.push(deathDates[to], to, true, generations[to]);
+
+		if (reproduceHazard != null && reproduceDates[to] != NEVER)
+			events.push(reproduceDates[to], to, false, generations[to]);
 	}
 
 	/**
@@ -129,7 +433,7 @@ public class DemographicManager implements BoidGraphListener {
 	 */
 	protected void kill(Boid b) {
 		unregister(b);
-		ctx.removeNode(b.getId());
+		ctx.removeBoid(b);
 	}
 
 	/**
@@ -153,8 +457,7 @@ public class DemographicManager implements BoidGraphListener {
 		while (futureParents.size() > 0) {
 			b = futureParents.poll();
 			
-			String id = b.getSpecies().createNewId();
-			ctx.addNode(id);
+			ctx.addBoid(b.getSpecies());
 //			ctx.addBoid(b.getSpecies(), b.getPosition().x, b.getPosition().y, b
 //					.getPosition().z);
 //			i++;
@@ -168,20 +471,84 @@ public class DemographicManager implements BoidGraphListener {
 	 * identifies boids succeptible to disapear or reproduce and remove/add them.
 	 */
 	protected void check() {
-		int age;
+		int date = currentDate;
+
+		checking = true;
 
-		for (Boid b : birthdays.keySet()) {
-			age = currentDate - birthdays.get(b);
+		try {
+			//
+			// Deaths drawn at each step are decided first, since a dying boid
+			// does not reproduce. The death date is used to mark it.
+			//
 
-			if (ctx.random.nextFloat() < deathProbability.getProbability(ctx, b, age)) {
-				toRemove.add(b);
-			} else if (ctx.random.nextFloat() < reproduceProbability .getProbability(ctx, b, age)) {
-				futureParents.add(b);
+			if (deathHazard == null) {
+				for (int slot = 0; slot < slotCount; slot++) {
+					Boid b = boids[slot];
+
+					if (b != null
+							&& ctx.random.nextFloat() < deathProbability
+									.getProbability(ctx, b, date
+											- birthDates[slot])) {
+						deathDates[slot] = date;
+						toRemove.add(b);
+					}
+				}
+			}
+
+			//
+			// Sampled events of this date. For a given boid, death comes
+			// before reproduction.
+			//
+
+			while (events.size() > 0 && events.peekDate() <= date) {
+				int slot = events.peekSlot();
+				boolean death = events.peekIsDeath();
+				int generation = events.peekGeneration();
+
+				events.pop();
+
+				if (boids[slot] == null || generations[slot] != generation)
+					continue;
+
+				if (death) {
+					if (deathHazard != null && deathDates[slot] <= date)
+						toRemove.add(boids[slot]);
+				} else if (reproduceHazard != null
+						&& reproduceDates[slot] <= date
+						&& deathDates[slot] != date) {
+					futureParents.add(boids[slot]);
+					scheduleReproduction(slot, date + 1 - birthDates[slot]);
+				}
+			}
+
+			//
+			// Reproductions drawn at each step.
+			//
+
+			if (reproduceHazard == null) {
+				for (int slot = 0; slot < slotCount; slot++) {
+					Boid b = boids[slot];
+
+					if (b != null
+							&& deathDates[slot] != date
+							&& ctx.random.nextFloat() < reproduceProbability
+									.getProbability(ctx, b, date
+											- birthDates[slot]))
+						futureParents.add(b);
+				}
 			}
-		}
 
-		makeLove();
-		killAll();
+			ctx.beginBatch();
+
+			try {
+				makeLove();
+				killAll();
+			} finally {
+				ctx.endBatch();
+			}
+		} finally {
+			checking = false;
+		}
 
 		currentDate++;
 	}
@@ -209,9 +576,320 @@ public class DemographicManager implements BoidGraphListener {
 		ctx.removeBoidGraphListener(this);
 	}
 
+	/**
+	 * Age of the boid of a slot at the next check.
+	 */
+	protected int nextCheckAge(int slot) {
+		return (checking ? currentDate + 1 : currentDate) - birthDates[slot];
+	}
+
+	/**
+	 * Draw the next death and reproduction dates of the boid of a slot.
+	 */
+	protected void schedule(int slot) {
+		int age = nextCheckAge(slot);
+
+		deathDates[slot] = NEVER;
+		reproduceDates[slot] = NEVER;
+
+		if (deathHazard != null) {
+			int at = deathHazard.sample(age);
+
+			if (at != NEVER) {
+				deathDates[slot] = birthDates[slot] + at;
+				events.push(deathDates[slot], slot, true, generations[slot]);
+			}
+		}
+
+		scheduleReproduction(slot, age);
+	}
+
+	/**
+	 * Draw the next reproduction date of the boid of a slot, at the given age
+	 * or after.
+	 */
+	protected void scheduleReproduction(int slot, int age) {
+		reproduceDates[slot] = NEVER;
+
+		if (reproduceHazard != null) {
+			int at = reproduceHazard.sample(age);
+
+			if (at != NEVER && at < deathDates[slot] - birthDates[slot]) {
+				reproduceDates[slot] = birthDates[slot] + at;
+				events.push(reproduceDates[slot], slot, false,
+						generations[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Draw again the events of every boid, after the probabilities or the
+	 * dates changed. Since the events are drawn with the hazard of each age,
+	 * drawing them again from the current age does not change their law.
+	 */
+	protected void reschedule() {
+		events.clear();
+
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (boids[slot] != null) {
+				generations[slot]++;
+				schedule(slot);
+			}
+		}
+	}
+
+	protected void grow(int size) {
+		boids = Arrays.copyOf(boids, size);
+		birthDates = Arrays.copyOf(birthDates, size);
+		deathDates = Arrays.copyOf(deathDates, size);
+		reproduceDates = Arrays.copyOf(reproduceDates, size);
+		generations = Arrays.copyOf(generations, size);
+	}
+
+	/**
+	 * Samples the age at which an event occurs, knowing its probability at
+	 * each age.
+	 * 
+	 * <p>
+	 * The logarithm of the probability that the event did not occur from birth
+	 * up to each age is cached in a table. Sampling is then an inverse
+	 * transform : a uniform number is drawn, and the table is searched for the
+	 * first age where the survival falls under it. Over the size of the table,
+	 * the probability is supposed to stay the one of the last age, which is
+	 * exact for constant and sigmoid probabilities.
+	 * </p>
+	 */
+	protected static class Hazard {
+		/**
+		 * Maximum count of ages in the table.
+		 */
+		static final int MAX_AGES = 1 << 16;
+
+		final BoidGraph ctx;
+		final Probability probability;
+
+		/**
+		 * logSurvival[a] is the logarithm of the probability that the event
+		 * did not occur for ages 0 to a-1.
+		 */
+		double[] logSurvival;
+
+		/**
+		 * Number of valid entries in logSurvival.
+		 */
+		int size;
+
+		/**
+		 * Logarithm of the probability that the event does not occur at an
+		 * age over the table.
+		 */
+		double tail;
+
+		/**
+		 * Create a sampler for a probability, or return null if the
+		 * probability does not only depend on age.
+		 */
+		static Hazard create(BoidGraph ctx, Probability probability) {
+			if (probability instanceof Probability.AgeOnly)
+				return new Hazard(ctx, probability);
+
+			return null;
+		}
+
+		Hazard(BoidGraph ctx, Probability probability) {
+			this.ctx = ctx;
+			this.probability = probability;
+			this.logSurvival = new double[64];
+			this.size = 1;
+			this.tail = log1m(probability.getProbability(ctx, null, 0));
+		}
+
+		/**
+		 * Age, equal to or after the given one, at which the event occurs, or
+		 * {@link DemographicManager#NEVER}.
+		 */
+		int sample(int fromAge) {
+			double target = Math.log(1 - ctx.random.nextDouble());
+
+			if (fromAge < 0)
+				fromAge = 0;
+
+			if (probability instanceof Probability.ConstantProbability)
+				return geometric(fromAge, target);
+
+			if (fromAge >= MAX_AGES - 1) {
+				ensure(MAX_AGES);
+				return geometric(fromAge, target);
+			}
+
+			ensure(fromAge + 1);
+			target += logSurvival[fromAge];
+
+			while (logSurvival[size - 1] >= target && size < MAX_AGES)
+				ensure(Math.min(size * 2, MAX_AGES));
+
+			if (logSurvival[size - 1] >= target)
+				return geometric(size - 1, target - logSurvival[size - 1]);
+
+			//
+			// Smallest index j > fromAge with logSurvival[j] < target, the
+			// event occurs at age j - 1.
+			//
+
+			int lo = fromAge + 1, hi = size - 1;
+
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+
+				if (logSurvival[mid] < target)
+					hi = mid;
+				else
+					lo = mid + 1;
+			}
+
+			return lo - 1;
+		}
+
+		/**
+		 * Age at which the event occurs, from the given one, if its
+		 * probability does not change any more. The logarithm of the survival
+		 * has to decrease strictly more than the given budget.
+		 */
+		int geometric(int fromAge, double budget) {
+			if (tail == 0)
+				return NEVER;
+
+			if (Double.isInfinite(tail))
+				return fromAge;
+
+			double age = fromAge + Math.floor(budget / tail);
+
+			return age >= NEVER ? NEVER : (int) age;
+		}
+
+		/**
+		 * Fill the table up to the given size.
+		 */
+		void ensure(int newSize) {
+			if (newSize > logSurvival.length)
+				logSurvival = Arrays.copyOf(logSurvival,
+						Math.max(newSize, logSurvival.length * 2));
+
+			while (size < newSize) {
+				double q = log1m(probability.getProbability(ctx, null,
+						size - 1));
+				logSurvival[size] = logSurvival[size - 1] + q;
+				tail = q;
+				size++;
+			}
+		}
+
+		static double log1m(double p) {
+			if (p <= 0)
+				return 0;
+			if (p >= 1)
+				return Double.NEGATIVE_INFINITY;
+
+			return Math.log1p(-p);
+		}
+	}
+
+	/**
+	 * Binary heap of events. Each event is packed in a long, the date in the
+	 * high bits so that events are ordered by date, then by slot, deaths
+	 * before reproductions.
+	 */
+	protected static class EventQueue {
+		long[] keys = new long[64];
+		int[] gens = new int[64];
+		int size = 0;
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void push(int date, int slot, boolean death, int generation) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				gens = Arrays.copyOf(gens, size * 2);
+			}
+
+			long key = ((long) date << 32) | ((long) slot << 1)
+					| (death ? 0 : 1);
+			int i = size++;
+
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+
+				if (keys[parent] <= key)
+					break;
+
+				keys[i] = keys[parent];
+				gens[i] = gens[parent];
+				i = parent;
+			}
+
+			keys[i] = key;
+			gens[i] = generation;
+		}
+
+		int peekDate() {
+			return (int) (keys[0] >>> 32);
+		}
+
+		int peekSlot() {
+			return (int) ((keys[0] & 0xFFFFFFFFL) >>> 1);
+		}
+
+		boolean peekIsDeath() {
+			return (keys[0] & 1) == 0;
+		}
+
+		int peekGeneration() {
+			return gens[0];
+		}
+
+		void pop() {
+			long key = keys[--size];
+			int gen = gens[size];
+			int i = 0;
+
+			while (true) {
+				int child = 2 * i + 1;
+
+				if (child >= size)
+					break;
+
+				if (child + 1 < size && keys[child + 1] < keys[child])
+					child++;
+
+				if (key <= keys[child])
+					break;
+
+				keys[i] = keys[child];
+				gens[i] = gens[child];
+				i = child;
+			}
+
+			if (size > 0) {
+				keys[i] = key;
+				gens[i] = gen;
+			}
+		}
+	}
+
 	/**
 	 * A demographic manager that handles boids species.
 	 * 
+	 * <p>
+	 * It is not a listener of the graph : the species gives it its own boids
+	 * and calls {@link #step(double)} at the end of each step.
+	 * </p>
+	 * 
 	 * @author Guilhelm Savin
 	 * @author Antoine Dutot
 	 */
@@ -219,14 +897,13 @@ public class DemographicManager implements BoidGraphListener {
 		BoidSpecies species;
 
 		public SpeciesDemographicManager(BoidSpecies species, BoidGraph ctx) {
-			super(ctx);
-
-			this.species = species;
+			this(species, ctx, new Probability.ConstantProbability(1),
+					new Probability.DeathProbability());
 		}
 
 		public SpeciesDemographicManager(BoidSpecies species, BoidGraph ctx,
 				Probability r, Probability d) {
-			super(ctx, r, d);
+			super(ctx, r, d, false);
 
 			this.species = species;
 		}
@@ -242,5 +919,38 @@ public class DemographicManager implements BoidGraphListener {
 			if (b.getSpecies() == species)
 				super.unregister(b);
 		}
+
+		/**
+		 * The position of the boid in its species. The species must call
+		 * {@link #unregister(Boid)} before it moves its last boid to the
+		 * position of the removed one.
+		 */
+		@Override
+		protected int slotOf(Boid b) {
+			return b.speciesSlot;
+		}
+
+		/**
+		 * The species unregisters the boid when it is removed, in step with
+		 * its own list.
+		 */
+		@Override
+		protected void kill(Boid b) {
+			ctx.removeBoid(b);
+		}
+
+		/**
+		 * Do the same move as the species : its last boid takes the emptied
+		 * position, so that slots stay dense.
+		 */
+		@Override
+		protected void vacate(int slot) {
+			int last = slotCount - 1;
+
+			if (last != slot)
+				move(last, slot);
+
+			slotCount = last;
+		}
 	}
 }
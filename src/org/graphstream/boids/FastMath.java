@@ -0,0 +1,93 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+/**
+ * Approximations of the math functions used by the fast force kernel.
+ * 
+ * @author Antoine Dutot
+ */
+public final class FastMath {
+	/**
+	 * Number of bits of the mantissa used to index the logarithm table.
+	 */
+	public static final int LOG_BITS = 10;
+
+	/**
+	 * Bound of the absolute error of {@link #log(double)}. The table is
+	 * interpolated linearly with a step h = 2^-LOG_BITS, on ln(1+u) whose
+	 * second derivative is at most 1 on [0,1], so the error is at most
+	 * h&sup2;/8, plus rounding.
+	 */
+	public static final double LOG_MAX_ERROR = 1.0 / (8 << (2 * LOG_BITS))
+			+ 1e-15;
+
+	private static final double LN2 = Math.log(2);
+
+	private static final int SHIFT = 52 - LOG_BITS;
+
+	private static final long FRACTION_MASK = (1L << SHIFT) - 1;
+
+	private static final double FRACTION_SCALE = 1.0 / (1L << SHIFT);
+
+	/**
+	 * ln(1 + i / 2^LOG_BITS).
+	 */
+	private static final double[] LOG_TABLE = new double[(1 << LOG_BITS) + 1];
+
+	static {
+		for (int i = 0; i < LOG_TABLE.length; i++)
+			LOG_TABLE[i] = Math.log1p(i / (double) (1 << LOG_BITS));
+	}
+
+	private FastMath() {
+	}
+
+	/**
+	 * Natural logarithm, within {@link #LOG_MAX_ERROR} of
+	 * {@link Math#log(double)}. Zero, negative, subnormal, infinite and NaN
+	 * arguments fall back to {@link Math#log(double)}.
+	 * 
+	 * @param x
+	 *            The argument.
+	 * @return The logarithm of x.
+	 */
+	public static double log(double x) {
+		if (!(x >= Double.MIN_NORMAL) || x == Double.POSITIVE_INFINITY)
+			return Math.log(x);
+
+		long bits = Double.doubleToRawLongBits(x);
+		int exponent = (int) (bits >>> 52) - 1023;
+		int i = (int) ((bits >>> SHIFT) & ((1 << LOG_BITS) - 1));
+		double t = (bits & FRACTION_MASK) * FRACTION_SCALE;
+		double lo = LOG_TABLE[i];
+
+		return exponent * LN2 + lo + t * (LOG_TABLE[i + 1] - lo);
+	}
+}
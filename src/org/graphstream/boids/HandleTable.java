@@ -0,0 +1,141 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.Arrays;
+
+/**
+ * Dense table of objects indexed by small integer handles.
+ * 
+ * <p>
+ * Handles are allocated from zero. The handle of a removed object is reused by
+ * the next object added, the last freed first, so that handles stay below the
+ * maximum number of objects that were present at the same time. This allows
+ * engines to keep the state of boids or species in plain arrays indexed by
+ * handle.
+ * </p>
+ * 
+ * @param <T>
+ *            The type of objects.
+ * @author Antoine Dutot
+ */
+public class HandleTable<T> {
+	/**
+	 * Object of each handle, null for free handles.
+	 */
+	protected Object[] elements = new Object[16];
+
+	/**
+	 * Number of handles ever allocated.
+	 */
+	protected int capacity = 0;
+
+	/**
+	 * Free handles, used as a stack.
+	 */
+	protected int[] free = new int[16];
+
+	/**
+	 * Number of free handles.
+	 */
+	protected int freeCount = 0;
+
+	/**
+	 * Allocate a handle for an object.
+	 * 
+	 * @param element
+	 *            The object.
+	 * @return Its handle.
+	 */
+	public int add(T element) {
+		int handle;
+
+		if (freeCount > 0) {
+			handle = free[--freeCount];
+		} else {
+			if (capacity == elements.length)
+				elements = Arrays.copyOf(elements, capacity * 2);
+
+			handle = capacity++;
+		}
+
+		elements[handle] = element;
+
+		return handle;
+	}
+
+	/**
+	 * Free a handle.
+	 * 
+	 * @param handle
+	 *            The handle to free, ignored if already free.
+	 */
+	public void remove(int handle) {
+		if (handle < 0 || handle >= capacity || elements[handle] == null)
+			return;
+
+		elements[handle] = null;
+
+		if (freeCount == free.length)
+			free = Arrays.copyOf(free, freeCount * 2);
+
+		free[freeCount++] = handle;
+	}
+
+	/**
+	 * Object of a handle.
+	 * 
+	 * @param handle
+	 *            The handle.
+	 * @return The object, or null if the handle is free.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int handle) {
+		return handle < 0 || handle >= capacity ? null : (T) elements[handle];
+	}
+
+	/**
+	 * Upper bound of the handles, arrays indexed by handle must have at least
+	 * this size.
+	 * 
+	 * @return One more than the greatest handle ever allocated.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of allocated handles.
+	 * 
+	 * @return The number of objects in the table.
+	 */
+	public int size() {
+		return capacity - freeCount;
+	}
+}
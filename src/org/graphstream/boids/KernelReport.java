@@ -0,0 +1,274 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Measure the accuracy of the fast force kernel against the exact one.
+ * 
+ * <p>
+ * Three things are measured for a species: the largest error of the
+ * repulsion falloff over the whole separation zone, the number of pairs of
+ * boids on which the two visibility tests disagree, and the error of the
+ * steering of each boid, the same neighbors being integrated by both
+ * kernels. Steering errors are given relative to the mean norm of the exact
+ * steering.
+ * </p>
+ * 
+ * <p>
+ * Measuring overwrites the forces of the boids, do it between two steps.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class KernelReport {
+	/**
+	 * Number of distances at which the falloff is compared.
+	 */
+	public static final int FALLOFF_SAMPLES = 100000;
+
+	/**
+	 * Name of the species measured.
+	 */
+	public final String species;
+
+	/**
+	 * Largest absolute error of the repulsion falloff.
+	 */
+	public double falloffError;
+
+	/**
+	 * Bound of the falloff error, the error of the fast logarithm scaled by
+	 * the inverse logarithm of the separation zone.
+	 */
+	public double falloffBound;
+
+	/**
+	 * Number of pairs of boids whose visibility was tested.
+	 */
+	public long pairs;
+
+	/**
+	 * Number of pairs on which the visibility tests disagree.
+	 */
+	public long disagreements;
+
+	/**
+	 * Number of boids whose steering was compared.
+	 */
+	public int boids;
+
+	/**
+	 * Mean norm of the exact steering.
+	 */
+	public double norm;
+
+	/**
+	 * Mean distance between the fast and exact steering.
+	 */
+	public double meanError;
+
+	/**
+	 * Largest distance between the fast and exact steering.
+	 */
+	public double maxError;
+
+	protected KernelReport(String species) {
+		this.species = species;
+	}
+
+	/**
+	 * Largest absolute difference between the exact falloff and the fast
+	 * one, for distances spread logarithmically from a ten thousandth of the
+	 * separation zone to the separation zone.
+	 * 
+	 * @param v
+	 *            The separation zone.
+	 * @return The largest error.
+	 */
+	public static double falloffError(double v) {
+		double invLog = 1 / Math.log(v);
+		double lo = Math.log(v * 1e-4), hi = Math.log(v);
+		double max = 0;
+
+		for (int i = 0; i <= FALLOFF_SAMPLES; i++) {
+			double len = Math.exp(lo + (hi - lo) * i / FALLOFF_SAMPLES);
+			double exact = Math.log(Math.min(len, v)) / Math.log(v);
+			double fast = len < v ? FastMath.log(len) * invLog : 1;
+
+			max = Math.max(max, Math.abs(fast - exact));
+		}
+
+		return max;
+	}
+
+	/**
+	 * Measure the fast kernel of a species against its exact kernel. The
+	 * species itself is not changed, the parameters of both kernels are
+	 * built aside and only swapped in while the steering is computed.
+	 * 
+	 * @param ctx
+	 *            The simulation.
+	 * @param species
+	 *            The species to measure.
+	 * @return The report.
+	 */
+	public static KernelReport measure(BoidGraph ctx, BoidSpecies species) {
+		KernelReport report = new KernelReport(species.getName());
+		SpeciesParameters params = species.parameters;
+		Vector3 exact = new Vector3();
+		Vector3 fast = new Vector3();
+
+		//
+		// Parameters of both kernels, frozen side by side.
+		//
+
+		SpeciesParameters exactParams = new SpeciesParameters(species,
+				BoidSpecies.Kernel.EXACT);
+		SpeciesParameters fastParams = new SpeciesParameters(species,
+				BoidSpecies.Kernel.FAST);
+		double v = exactParams.separationZone;
+
+		report.falloffError = falloffError(v);
+		report.falloffBound = FastMath.LOG_MAX_ERROR / Math.abs(Math.log(v));
+
+		//
+		// Visibility, on all the pairs, both kernels in the same pass.
+		//
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			if (b.getSpecies() != species)
+				continue;
+
+			BoidForces f = b.getForces();
+
+			for (Boid o : ctx.<Boid> getEachNode()) {
+				if (o == b)
+					continue;
+
+				Point3 p = o.getPosition();
+
+				report.pairs++;
+
+				if (f.isVisible(b, p, exactParams) != f.isVisible(b, p,
+						fastParams))
+					report.disagreements++;
+			}
+		}
+
+		//
+		// Steering, with the same neighbors for both kernels. The forces read
+		// the parameters of the species, which are swapped for each boid.
+		//
+
+		try {
+			for (Boid b : ctx.<Boid> getEachNode()) {
+				if (b.getSpecies() != species)
+					continue;
+
+				BoidForces f = b.getForces();
+
+				species.parameters = exactParams;
+
+				ArrayList<Boid> neigh = new ArrayList<Boid>(
+						f.getNeighborhood());
+
+				f.steering(neigh, exact);
+
+				species.parameters = fastParams;
+				f.steering(neigh, fast);
+
+				double dx = fast.data[0] - exact.data[0];
+				double dy = fast.data[1] - exact.data[1];
+				double dz = fast.data[2] - exact.data[2];
+				double error = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+				report.boids++;
+				report.norm += exact.length();
+				report.meanError += error;
+				report.maxError = Math.max(report.maxError, error);
+			}
+		} finally {
+			species.parameters = params;
+		}
+
+		if (report.boids > 0) {
+			report.norm /= report.boids;
+			report.meanError /= report.boids;
+		}
+
+		return report;
+	}
+
+	/**
+	 * Print the report on one line.
+	 * 
+	 * @param out
+	 *            Where to print.
+	 */
+	public void print(PrintStream out) {
+		double relMean = norm > 0 ? meanError / norm : 0;
+		double relMax = norm > 0 ? maxError / norm : 0;
+
+		out.printf(
+				"%s: falloff error %.3g (bound %.3g), visibility %d/%d pairs differ, %d boids, |exact| %.4g, mean error %.3g (%.2g%%), max error %.3g (%.2g%%)%n",
+				species, falloffError, falloffBound, disagreements,
+				pairs, boids, norm, meanError, relMean * 100, maxError,
+				relMax * 100);
+	}
+
+	/**
+	 * Load a configuration, let the swarm form, then print a report for each
+	 * species.
+	 * 
+	 * <p>
+	 * Arguments are the configuration file and the number of warm-up steps,
+	 * both optional.
+	 * </p>
+	 */
+	public static void main(String... args) throws IOException {
+		String dgs = args.length > 0 ? args[0] : "configExample.dgs";
+		int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		BoidGraph ctx = new BoidGraph();
+		ctx.loadDGSConfiguration(dgs);
+
+		for (int i = 0; i < warmup; i++)
+			ctx.step();
+
+		for (BoidSpecies species : ctx.boidSpecies.values())
+			measure(ctx, species).print(System.out);
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.Collection;
+
+/**
+ * The k nearest boids found so far by a search.
+ * 
+ * <p>
+ * Boids are kept in a bounded max-heap on their distance, so that the
+ * farthest of the kept boids is known at once, and replaced in logarithmic
+ * time when a nearer one is offered. Once the heap is full, the distance of
+ * its farthest boid is the radius a search still needs to explore, and it
+ * only shrinks as the search goes on.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class NearestBoids extends BoidCollector {
+	protected Boid[] boids = new Boid[0];
+
+	/**
+	 * Square of the distance of each boid, heap ordered.
+	 */
+	protected double[] d2 = new double[0];
+
+	protected int size;
+
+	protected int k;
+
+	/**
+	 * Empty the heap and set its capacity.
+	 * 
+	 * @param k
+	 *            The number of boids to keep.
+	 */
+	public void reset(int k) {
+		if (boids.length < k) {
+			boids = new Boid[k];
+			d2 = new double[k];
+		}
+
+		for (int i = 0; i < size; i++)
+			boids[i] = null;
+
+		this.k = k;
+		this.size = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidCollector#offer(org.graphstream.boids.Boid,
+	 * double)
+	 */
+	public boolean offer(Boid b, double dist2) {
+		if (size < k) {
+			int i = size++;
+
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+
+				if (d2[parent] >= dist2)
+					break;
+
+				boids[i] = boids[parent];
+				d2[i] = d2[parent];
+				i = parent;
+			}
+
+			boids[i] = b;
+			d2[i] = dist2;
+
+			return true;
+		}
+
+		if (k == 0 || dist2 >= d2[0])
+			return false;
+
+		int i = 0;
+
+		while (true) {
+			int c = 2 * i + 1;
+
+			if (c >= size)
+				break;
+
+			if (c + 1 < size && d2[c + 1] > d2[c])
+				c++;
+
+			if (d2[c] <= dist2)
+				break;
+
+			boids[i] = boids[c];
+			d2[i] = d2[c];
+			i = c;
+		}
+
+		boids[i] = b;
+		d2[i] = dist2;
+
+		return true;
+	}
+
+	/**
+	 * Square of the distance beyond which boids are not worth offering.
+	 * 
+	 * @return The distance of the farthest boid when the heap is full,
+	 *         infinity else.
+	 */
+	@Override
+	public double getRadius2() {
+		return size < k ? Double.POSITIVE_INFINITY : (k == 0 ? 0 : d2[0]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidCollector#size()
+	 */
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidCollector#addTo(java.util.Collection)
+	 */
+	public void addTo(Collection<Boid> result) {
+		for (int i = 0; i < size; i++)
+			result.add(boids[i]);
+	}
+}
@@ -37,7 +37,19 @@ package org.graphstream.boids;
  * @author Guilhelm Savin
  */
 public interface Probability {
-	public static class ConstantProbability implements Probability {
+	/**
+	 * A probability that only depends on the boid age.
+	 * 
+	 * <p>
+	 * Such a probability is called with a null boid. This allows the
+	 * {@link DemographicManager} to sample once when the event will occur
+	 * instead of drawing at each step.
+	 * </p>
+	 */
+	public static interface AgeOnly extends Probability {
+	}
+
+	public static class ConstantProbability implements AgeOnly {
 		double p;
 
 		public ConstantProbability(double p) {
@@ -67,7 +79,8 @@ public interface Probability {
 		}
 	}
 
-	public static class DeathProbability extends SigmoidProbability {
+	public static class DeathProbability extends SigmoidProbability implements
+			AgeOnly {
 		public DeathProbability() {
 			super(0.3, 80);
 		}
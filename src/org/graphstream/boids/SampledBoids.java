@@ -0,0 +1,143 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * A uniform random sample of at most m of the boids offered.
+ * 
+ * <p>
+ * The sample is drawn in one pass with reservoir sampling: the first m boids
+ * are kept, then the n-th boid offered replaces a random kept boid with
+ * probability m/n. Every offered boid thus ends in the sample with the same
+ * probability, without the search having to build the full list first.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class SampledBoids extends BoidCollector {
+	protected Boid[] boids = new Boid[0];
+
+	protected int size;
+
+	protected int m;
+
+	/**
+	 * Number of boids offered since the last reset.
+	 */
+	protected int offered;
+
+	protected Random random;
+
+	public SampledBoids(Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * Empty the sample and set its capacity.
+	 * 
+	 * @param m
+	 *            The number of boids to keep.
+	 */
+	public void reset(int m) {
+		if (boids.length < m)
+			boids = new Boid[m];
+
+		for (int i = 0; i < size; i++)
+			boids[i] = null;
+
+		this.m = m;
+		this.size = 0;
+		this.offered = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidCollector#offer(org.graphstream.boids.Boid,
+	 * double)
+	 */
+	public boolean offer(Boid b, double dist2) {
+		offered++;
+
+		if (size < m) {
+			boids[size++] = b;
+			return true;
+		}
+
+		int j = random.nextInt(offered);
+
+		if (j < m) {
+			boids[j] = b;
+			return true;
+		}
+
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidCollector#getRadius2()
+	 */
+	public double getRadius2() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidCollector#size()
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of boids offered since the last reset, that is the size of the
+	 * population the sample was drawn from.
+	 * 
+	 * @return The number of boids offered.
+	 */
+	public int getOffered() {
+		return offered;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidCollector#addTo(java.util.Collection)
+	 */
+	public void addTo(Collection<Boid> result) {
+		for (int i = 0; i < size; i++)
+			result.add(boids[i]);
+	}
+}
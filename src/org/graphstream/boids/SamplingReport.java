@@ -0,0 +1,240 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Measure the error of the sampled neighborhood mode against the exact one.
+ * 
+ * <p>
+ * For each boid of a species, the steering given by all its visible boids is
+ * compared to the steering given by several independent samples of them. The
+ * bias is the distance between the mean sampled steering and the exact one,
+ * the variance the mean square distance between a sampled steering and the
+ * mean one. Both are averaged over the boids and given relative to the mean
+ * norm of the exact steering, so that species with different factors can be
+ * compared.
+ * </p>
+ * 
+ * <p>
+ * Measuring overwrites the forces of the boids, do it between two steps.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class SamplingReport {
+	/**
+	 * Name of the species measured.
+	 */
+	public final String species;
+
+	/**
+	 * Size of the samples.
+	 */
+	public final int sampleSize;
+
+	/**
+	 * Number of samples drawn for each boid.
+	 */
+	public final int trials;
+
+	/**
+	 * Number of boids measured.
+	 */
+	public int boids;
+
+	/**
+	 * Mean number of visible boids.
+	 */
+	public double visible;
+
+	/**
+	 * Mean norm of the exact steering.
+	 */
+	public double norm;
+
+	/**
+	 * Mean distance between the mean sampled steering and the exact one.
+	 */
+	public double bias;
+
+	/**
+	 * Mean square distance between a sampled steering and the mean one.
+	 */
+	public double variance;
+
+	protected SamplingReport(String species, int sampleSize, int trials) {
+		this.species = species;
+		this.sampleSize = sampleSize;
+		this.trials = trials;
+	}
+
+	/**
+	 * Measure the sampled neighborhood of a species against its exact
+	 * neighborhood.
+	 * 
+	 * @param ctx
+	 *            The simulation.
+	 * @param species
+	 *            The species to measure.
+	 * @param sampleSize
+	 *            Size of the samples.
+	 * @param trials
+	 *            Number of samples drawn for each boid.
+	 * @return The report.
+	 */
+	public static SamplingReport measure(BoidGraph ctx, BoidSpecies species,
+			int sampleSize, int trials) {
+		SamplingReport report = new SamplingReport(species.getName(),
+				sampleSize, trials);
+		Vector3 exact = new Vector3();
+		Vector3 sampled = new Vector3();
+		double[] mean = new double[3];
+		double[][] samples = new double[trials][3];
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			if (b.getSpecies() != species)
+				continue;
+
+			BoidForces f = b.getForces();
+			ArrayList<Boid> neigh = new ArrayList<Boid>(f.getNeighborhood());
+
+			f.steering(neigh, exact);
+
+			mean[0] = mean[1] = mean[2] = 0;
+
+			for (int t = 0; t < trials; t++) {
+				f.steering(f.getSampledNeighborhood(sampleSize), sampled);
+
+				for (int i = 0; i < 3; i++) {
+					samples[t][i] = sampled.data[i];
+					mean[i] += sampled.data[i] / trials;
+				}
+			}
+
+			double bias2 = 0, variance = 0;
+
+			for (int i = 0; i < 3; i++) {
+				double d = mean[i] - exact.data[i];
+				bias2 += d * d;
+
+				for (int t = 0; t < trials; t++) {
+					d = samples[t][i] - mean[i];
+					variance += d * d / trials;
+				}
+			}
+
+			report.boids++;
+			report.visible += neigh.size();
+			report.norm += exact.length();
+			report.bias += Math.sqrt(bias2);
+			report.variance += variance;
+		}
+
+		if (report.boids > 0) {
+			report.visible /= report.boids;
+			report.norm /= report.boids;
+			report.bias /= report.boids;
+			report.variance /= report.boids;
+		}
+
+		return report;
+	}
+
+	/**
+	 * Bias relative to the mean norm of the exact steering.
+	 * 
+	 * @return The relative bias.
+	 */
+	public double getRelativeBias() {
+		return norm > 0 ? bias / norm : 0;
+	}
+
+	/**
+	 * Standard deviation relative to the mean norm of the exact steering.
+	 * 
+	 * @return The relative standard deviation.
+	 */
+	public double getRelativeDeviation() {
+		return norm > 0 ? Math.sqrt(variance) / norm : 0;
+	}
+
+	/**
+	 * Print the report on one line.
+	 * 
+	 * @param out
+	 *            Where to print.
+	 */
+	public void print(PrintStream out) {
+		out.printf(
+				"%s: %d boids, %.1f visible, M=%d, %d trials, |exact| %.4g, bias %.4g (%.2f%%), deviation %.4g (%.2f%%)%n",
+				species, boids, visible, sampleSize, trials, norm, bias,
+				getRelativeBias() * 100, Math.sqrt(variance),
+				getRelativeDeviation() * 100);
+	}
+
+	/**
+	 * Load a configuration, let the swarm form, then print a report for each
+	 * species and several sample sizes.
+	 * 
+	 * <p>
+	 * Arguments are the configuration file, the number of warm-up steps, the
+	 * number of trials and the sample sizes, all optional.
+	 * </p>
+	 */
+	public static void main(String... args) throws IOException {
+		String dgs = args.length > 0 ? args[0] : "configExample.dgs";
+		int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int trials = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		int[] sizes = { 1, 2, 5, 10, 20 };
+
+		if (args.length > 3) {
+			sizes = new int[args.length - 3];
+
+			for (int i = 3; i < args.length; i++)
+				sizes[i - 3] = Integer.parseInt(args[i]);
+		}
+
+		BoidGraph ctx = new BoidGraph();
+		ctx.loadDGSConfiguration(dgs);
+
+		for (int i = 0; i < warmup; i++)
+			ctx.step();
+
+		for (BoidSpecies species : ctx.boidSpecies.values()) {
+			for (int m : sizes)
+				measure(ctx, species, m, trials).print(System.out);
+		}
+	}
+}
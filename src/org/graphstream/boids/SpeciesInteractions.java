@@ -0,0 +1,352 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Coefficients of the interactions between each pair of species.
+ * 
+ * <p>
+ * For an observer species A and an observed species B, the coefficients tell
+ * how a boid of A reacts to a boid of B it sees:
+ * <ul>
+ * <li>fear : factor of the repulsion from B;</li>
+ * <li>attraction : weight of B in the barycenter A is attracted to;</li>
+ * <li>alignment : weight of the direction of B in the direction of A;</li>
+ * <li>visibility : factor of the view zone of A when looking at B, in [0..1],
+ * zero meaning that B is ignored.</li>
+ * </ul>
+ * </p>
+ * 
+ * <p>
+ * Without explicit coefficients, a species is attracted by and aligns with
+ * itself only, is repulsed by itself with a factor one and by the other
+ * species with their fear factor, and sees every species. This is the
+ * behavior of boids without an interaction matrix.
+ * </p>
+ * 
+ * <p>
+ * Coefficients are given by species names, in DGS as
+ * <code>boids.species.A.interaction.B.fear</code> for example. They are
+ * compiled, with the defaults, in a dense table indexed by species handles,
+ * four values per pair, rebuilt at the beginning of a step when something
+ * changed. The forces computation then reads them with one array access.
+ * Changes made while the forces are computed are only visible in the table at
+ * the next step.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class SpeciesInteractions {
+	/**
+	 * Kinds of coefficients.
+	 */
+	public static enum Coefficient {
+		FEAR, ATTRACTION, ALIGNMENT, VISIBILITY
+	}
+
+	/**
+	 * Offset of the fear coefficient of a pair in the table.
+	 */
+	public static final int FEAR = 0;
+
+	/**
+	 * Offset of the attraction coefficient of a pair in the table.
+	 */
+	public static final int ATTRACTION = 1;
+
+	/**
+	 * Offset of the alignment coefficient of a pair in the table.
+	 */
+	public static final int ALIGNMENT = 2;
+
+	/**
+	 * Offset of the visibility coefficient of a pair in the table.
+	 */
+	public static final int VISIBILITY = 3;
+
+	/**
+	 * Number of values per pair in the table.
+	 */
+	public static final int STRIDE = 4;
+
+	/**
+	 * The boid graph.
+	 */
+	protected BoidGraph ctx;
+
+	/**
+	 * Coefficients given explicitly, by observer then observed species name.
+	 * Missing coefficients are NaN.
+	 */
+	protected LinkedHashMap<String, LinkedHashMap<String, double[]>> explicit = new LinkedHashMap<String, LinkedHashMap<String, double[]>>();
+
+	/**
+	 * The dense table, indexed by species handles, null until the first
+	 * freeze.
+	 */
+	protected double[] table = null;
+
+	/**
+	 * Number of species handles covered by the table.
+	 */
+	protected int size = 0;
+
+	/**
+	 * True if the table must be rebuilt.
+	 */
+	protected boolean changed = true;
+
+	public SpeciesInteractions(BoidGraph ctx) {
+		this.ctx = ctx;
+	}
+
+	/**
+	 * Set a coefficient.
+	 * 
+	 * @param observer
+	 *            Name of the species that sees.
+	 * @param observed
+	 *            Name of the species that is seen.
+	 * @param c
+	 *            The coefficient.
+	 * @param value
+	 *            Its value, or NaN to go back to the default.
+	 */
+	public void set(String observer, String observed, Coefficient c,
+			double value) {
+		LinkedHashMap<String, double[]> row = explicit.get(observer);
+
+		if (row == null) {
+			row = new LinkedHashMap<String, double[]>();
+			explicit.put(observer, row);
+		}
+
+		double[] values = row.get(observed);
+
+		if (values == null) {
+			values = new double[STRIDE];
+			Arrays.fill(values, Double.NaN);
+			row.put(observed, values);
+		}
+
+		if (c == Coefficient.VISIBILITY && !Double.isNaN(value))
+			value = Math.max(0, Math.min(1, value));
+
+		values[c.ordinal()] = value;
+		changed = true;
+	}
+
+	/**
+	 * A coefficient as given by {@link #set(String, String, Coefficient, double)}.
+	 * 
+	 * @return The value, or NaN if the default is used.
+	 */
+	public double getExplicit(String observer, String observed, Coefficient c) {
+		LinkedHashMap<String, double[]> row = explicit.get(observer);
+		double[] values = row == null ? null : row.get(observed);
+
+		return values == null ? Double.NaN : values[c.ordinal()];
+	}
+
+	/**
+	 * All the coefficients given explicitly, as observer name, observed name,
+	 * coefficient name and value. Used to save them.
+	 */
+	public ArrayList<String[]> getExplicitCoefficients() {
+		ArrayList<String[]> all = new ArrayList<String[]>();
+
+		for (Map.Entry<String, LinkedHashMap<String, double[]>> row : explicit
+				.entrySet()) {
+			for (Map.Entry<String, double[]> e : row.getValue().entrySet()) {
+				for (Coefficient c : Coefficient.values()) {
+					double v = e.getValue()[c.ordinal()];
+
+					if (!Double.isNaN(v))
+						all.add(new String[] { row.getKey(), e.getKey(),
+								c.name(), Double.toString(v) });
+				}
+			}
+		}
+
+		return all;
+	}
+
+	/**
+	 * Remove all the coefficients given explicitly.
+	 */
+	public void clear() {
+		explicit.clear();
+		changed = true;
+	}
+
+	/**
+	 * Remove the coefficients of a deleted species.
+	 */
+	public void speciesDeleted(String name) {
+		explicit.remove(name);
+
+		Iterator<LinkedHashMap<String, double[]>> it = explicit.values()
+				.iterator();
+
+		while (it.hasNext())
+			it.next().remove(name);
+
+		changed = true;
+	}
+
+	/**
+	 * Tell the table must be rebuilt, because species or their parameters
+	 * changed.
+	 */
+	public void invalidate() {
+		changed = true;
+	}
+
+	/**
+	 * Rebuild the table if something changed. This is called by the graph at
+	 * the beginning of each step, just before the forces are computed. This is
+	 * the only place where the table changes.
+	 */
+	public void freeze() {
+		if (!changed)
+			return;
+
+		int n = ctx.getSpeciesHandleCapacity();
+		double[] t = new double[n * n * STRIDE];
+		HashMap<String, Integer> handles = new HashMap<String, Integer>();
+
+		for (int a = 0; a < n; a++) {
+			BoidSpecies sa = ctx.getSpecies(a);
+
+			if (sa != null)
+				handles.put(sa.getName(), a);
+
+			for (int b = 0; b < n; b++) {
+				BoidSpecies sb = ctx.getSpecies(b);
+				int k = (a * n + b) * STRIDE;
+
+				t[k + FEAR] = a == b || sb == null ? 1
+						: sb.getParameters().fearFactor;
+				t[k + ATTRACTION] = a == b ? 1 : 0;
+				t[k + ALIGNMENT] = a == b ? 1 : 0;
+				t[k + VISIBILITY] = 1;
+			}
+		}
+
+		for (Map.Entry<String, LinkedHashMap<String, double[]>> row : explicit
+				.entrySet()) {
+			Integer a = handles.get(row.getKey());
+
+			if (a == null)
+				continue;
+
+			for (Map.Entry<String, double[]> e : row.getValue().entrySet()) {
+				Integer b = handles.get(e.getKey());
+
+				if (b == null)
+					continue;
+
+				int k = (a * n + b) * STRIDE;
+				double[] values = e.getValue();
+
+				for (int i = 0; i < STRIDE; i++) {
+					if (!Double.isNaN(values[i]))
+						t[k + i] = values[i];
+				}
+			}
+		}
+
+		table = t;
+		size = n;
+		changed = false;
+	}
+
+	/**
+	 * The dense table. The coefficients of observer handle a and observed
+	 * handle b start at <code>(a * getSize() + b) * STRIDE</code>.
+	 * 
+	 * @return The table frozen at the beginning of the actual step.
+	 */
+	public double[] getTable() {
+		if (table == null)
+			freeze();
+
+		return table;
+	}
+
+	/**
+	 * Number of species handles covered by the table.
+	 * 
+	 * @return The side of the matrix.
+	 */
+	public int getSize() {
+		if (table == null)
+			freeze();
+
+		return size;
+	}
+
+	/**
+	 * Effective value of a coefficient, as frozen for the actual step.
+	 * 
+	 * @param observer
+	 *            The species that sees.
+	 * @param observed
+	 *            The species that is seen.
+	 * @param offset
+	 *            One of {@link #FEAR}, {@link #ATTRACTION}, {@link #ALIGNMENT}
+	 *            or {@link #VISIBILITY}.
+	 * @return The value.
+	 */
+	public double get(BoidSpecies observer, BoidSpecies observed, int offset) {
+		double[] t = getTable();
+		return t[(observer.handle * size + observed.handle) * STRIDE + offset];
+	}
+
+	/**
+	 * Can boids of a species see boids of another species at all?
+	 * 
+	 * @param observer
+	 *            Handle of the species that sees.
+	 * @param observed
+	 *            Handle of the species that is seen.
+	 * @return True if the visibility is not zero.
+	 */
+	public boolean sees(int observer, int observed) {
+		double[] t = getTable();
+		return t[(observer * size + observed) * STRIDE + VISIBILITY] > 0;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids;
+
+import org.graphstream.boids.rules.SteeringPipeline;
+
+/**
+ * Immutable copy of the parameters of a species used to move its boids.
+ * 
+ * <p>
+ * Species parameters may be changed at any time, but the forces computation
+ * uses this frozen copy, taken by the graph at the beginning of each step with
+ * {@link BoidSpecies#freeze()}. All boids of a species therefore see the same
+ * parameters during a whole step, and the computation reads plain final
+ * fields instead of calling getters for each neighbor.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public final class SpeciesParameters {
+	/**
+	 * The distance at which a boid is seen. This is the largest of the view
+	 * zone of the species and of the zones of its rules, so that a single
+	 * search gives the boids of all the rules.
+	 */
+	public final double viewZone;
+
+	/**
+	 * Distance under which visible boids repulse a boid.
+	 */
+	public final double separationZone;
+
+	/**
+	 * Distance under which a boid aligns with visible boids.
+	 */
+	public final double alignmentZone;
+
+	/**
+	 * Distance under which visible boids attract a boid.
+	 */
+	public final double cohesionZone;
+
+	/**
+	 * True if all the rules use the whole view zone, the usual case, where
+	 * no distance band is tested.
+	 */
+	public final boolean singleZone;
+
+	/**
+	 * The steering rules, null for the classic boid forces.
+	 */
+	public final SteeringPipeline rules;
+
+	/**
+	 * How the forces are evaluated.
+	 */
+	public final BoidSpecies.Kernel kernel;
+
+	/**
+	 * Square of the view zone.
+	 */
+	public final double viewZone2;
+
+	/**
+	 * Square of the angle of view, negative if the angle of view is.
+	 */
+	public final double angleOfView2;
+
+	/**
+	 * Inverse of the logarithm of the separation zone, for the repulsion
+	 * falloff.
+	 */
+	public final double invLogSeparation;
+
+	/**
+	 * The boid angle of view, as the cosine of the angle, -1 for 360 degrees.
+	 */
+	public final double angleOfView;
+
+	public final double speedFactor;
+
+	public final double maxSpeed;
+
+	public final double minSpeed;
+
+	public final double directionFactor;
+
+	public final double attractionFactor;
+
+	public final double repulsionFactor;
+
+	public final double inertia;
+
+	public final double fearFactor;
+
+	/**
+	 * Maximum number of interaction edges of a boid.
+	 */
+	public final int maxNeighborhood;
+
+	/**
+	 * Which of the visible boids are integrated in the forces.
+	 */
+	public final BoidSpecies.Neighborhood neighborhood;
+
+	/**
+	 * Number of visible boids integrated in the sampled neighborhood mode.
+	 */
+	public final int sampleSize;
+
+	/**
+	 * Copy the actual parameters of a species.
+	 * 
+	 * @param species
+	 *            The species.
+	 */
+	public SpeciesParameters(BoidSpecies species) {
+		this(species, species.kernel);
+	}
+
+	/**
+	 * Copy the actual parameters of a species, with another force kernel.
+	 * 
+	 * @param species
+	 *            The species.
+	 * @param kernel
+	 *            The kernel to use instead of the one of the species.
+	 */
+	public SpeciesParameters(BoidSpecies species, BoidSpecies.Kernel kernel) {
+		separationZone = species.separationZone > 0 ? species.separationZone
+				: species.viewZone;
+		alignmentZone = species.alignmentZone > 0 ? species.alignmentZone
+				: species.viewZone;
+		cohesionZone = species.cohesionZone > 0 ? species.cohesionZone
+				: species.viewZone;
+		viewZone = Math.max(species.viewZone,
+				Math.max(separationZone, Math.max(alignmentZone, cohesionZone)));
+		singleZone = separationZone == viewZone && alignmentZone == viewZone
+				&& cohesionZone == viewZone;
+		angleOfView = species.angleOfView;
+		speedFactor = species.speedFactor;
+		maxSpeed = species.maxSpeed;
+		minSpeed = species.minSpeed;
+		directionFactor = species.directionFactor;
+		attractionFactor = species.attractionFactor;
+		repulsionFactor = species.repulsionFactor;
+		inertia = species.inertia;
+		fearFactor = species.fearFactor;
+		maxNeighborhood = species.maxNeighborhood;
+		neighborhood = species.neighborhood;
+		sampleSize = species.sampleSize;
+		rules = species.rules;
+		this.kernel = kernel;
+		viewZone2 = viewZone * viewZone;
+		angleOfView2 = angleOfView * Math.abs(angleOfView);
+		invLogSeparation = 1 / Math.log(separationZone);
+	}
+
+	/**
+	 * Are all the visible boids integrated in the forces, whatever the
+	 * neighborhood mode?
+	 * 
+	 * @return False if only a part of the visible boids is used.
+	 */
+	public boolean integratesAllVisible() {
+		switch (neighborhood) {
+		case NEAREST:
+			return maxNeighborhood == Integer.MAX_VALUE;
+		case SAMPLED:
+			return sampleSize == Integer.MAX_VALUE;
+		default:
+			return true;
+		}
+	}
+}
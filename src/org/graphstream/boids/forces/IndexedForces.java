@@ -0,0 +1,168 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidCollector;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.miv.pherd.geom.Point3;
+
+/**
+ * Forces of a boid whose neighbors are searched in a spatial index owned by
+ * an {@link IndexedForcesFactory}.
+ * 
+ * <p>
+ * The forces store the position of the boid themselves, the factory only
+ * reads them to build its index.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class IndexedForces extends BoidForces {
+	/**
+	 * The factory owning the index.
+	 */
+	protected IndexedForcesFactory factory;
+
+	protected Point3 position;
+
+	protected Point3 nextPosition;
+
+	/**
+	 * Neighbors found by the last search, reused from one step to the next.
+	 */
+	protected ArrayList<Boid> contacts = new ArrayList<Boid>();
+
+	public IndexedForces(Boid b, IndexedForcesFactory factory) {
+		super(b);
+
+		this.factory = factory;
+		this.position = new Point3();
+		this.nextPosition = new Point3();
+
+		randomPosition();
+	}
+
+	/**
+	 * Place the boid at a random position in the area. Used when the boid is
+	 * created or recycled.
+	 */
+	public void randomPosition() {
+		BoidGraph ctx = (BoidGraph) boid.getGraph();
+		Random r = ctx.getRandom();
+		Point3 lo = ctx.getLowAnchor();
+		Point3 hi = ctx.getHighAnchor();
+
+		position.x = r.nextDouble() * (hi.x - lo.x) + lo.x;
+		position.y = r.nextDouble() * (hi.y - lo.y) + lo.y;
+		position.z = factory.is3D ? r.nextDouble() * (hi.z - lo.z) + lo.z : 0;
+		nextPosition.copy(position);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForces#getPosition()
+	 */
+	public Point3 getPosition() {
+		return position;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForces#setPosition(double, double, double)
+	 */
+	public void setPosition(double x, double y, double z) {
+		position.set(x, y, z);
+		nextPosition.set(x, y, z);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForces#getNextPosition()
+	 */
+	public Point3 getNextPosition() {
+		return nextPosition;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForces#getNeighborhood()
+	 */
+	public Collection<Boid> getNeighborhood() {
+		contacts.clear();
+		factory.getNeighborhood(boid, contacts);
+
+		return contacts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForces#collect(org.graphstream.boids.BoidCollector
+	 * )
+	 */
+	@Override
+	protected Collection<Boid> collect(BoidCollector collector) {
+		factory.collectNeighborhood(boid, collector);
+		contacts.clear();
+		collector.addTo(contacts);
+
+		return contacts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForces#checkWalls()
+	 */
+	@Override
+	protected void checkWalls() {
+		if (factory.isBounded())
+			super.checkWalls();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForces#is3D()
+	 */
+	public boolean is3D() {
+		return factory.is3D;
+	}
+}
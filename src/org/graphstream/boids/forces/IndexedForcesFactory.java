@@ -0,0 +1,224 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidCollector;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidForcesFactory;
+import org.graphstream.boids.BoidGraph;
+import org.miv.pherd.geom.Point3;
+
+/**
+ * Base of the forces factories that rebuild a spatial index of the boids at
+ * each step.
+ * 
+ * <p>
+ * At each step the index is built from the current positions, then the forces
+ * of every boid are computed using the index, and only then the boids move.
+ * Boids added or removed between two steps are therefore taken into account
+ * by the next build, and subclasses only have to provide the index itself.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public abstract class IndexedForcesFactory implements BoidForcesFactory {
+	protected BoidGraph ctx;
+
+	protected boolean is3D;
+
+	/**
+	 * Work list for {@link #collectNeighborhood(Boid, BoidCollector)}.
+	 */
+	protected ArrayList<Boid> visible = new ArrayList<Boid>();
+
+	public IndexedForcesFactory(BoidGraph ctx, boolean is3D) {
+		this.ctx = ctx;
+		this.is3D = is3D;
+	}
+
+	/**
+	 * Are the boids kept inside the area of the simulation? When not, walls
+	 * are ignored and the boids can fly as far as they want, so the index
+	 * must not depend on the area.
+	 * 
+	 * @return True by default.
+	 */
+	public boolean isBounded() {
+		return true;
+	}
+
+	/**
+	 * Build the index from the current positions of all the boids.
+	 */
+	protected abstract void build();
+
+	/**
+	 * Remove all the boids from the index.
+	 */
+	protected abstract void clear();
+
+	/**
+	 * Add the boids a boid can see to a list. The boid itself must not be
+	 * added.
+	 * 
+	 * @param b
+	 *            The boid looking around.
+	 * @param contacts
+	 *            Where to add the visible boids.
+	 */
+	protected abstract void getNeighborhood(Boid b, List<Boid> contacts);
+
+	/**
+	 * Offer the boids a boid can see to a collector. By default all the
+	 * visible boids are searched then offered, indexes able to offer them
+	 * during the search should override this.
+	 * 
+	 * @param b
+	 *            The boid looking around.
+	 * @param collector
+	 *            Receives the visible boids.
+	 */
+	protected void collectNeighborhood(Boid b, BoidCollector collector) {
+		Point3 p = b.getPosition();
+
+		visible.clear();
+		getNeighborhood(b, visible);
+
+		for (int i = 0; i < visible.size(); i++) {
+			Point3 q = visible.get(i).getPosition();
+			double dx = q.x - p.x, dy = q.y - p.y, dz = q.z - p.z;
+
+			collector.offer(visible.get(i), dx * dx + dy * dy + dz * dz);
+		}
+
+		visible.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForcesFactory#init()
+	 */
+	public void init() {
+		build();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#createNewForces(org.graphstream
+	 * .boids.Boid)
+	 */
+	public BoidForces createNewForces(Boid b) {
+		return new IndexedForces(b, this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#recycleForces(org.graphstream
+	 * .boids.Boid, org.graphstream.boids.BoidForces)
+	 */
+	public BoidForces recycleForces(Boid b, BoidForces forces) {
+		if (!(forces instanceof IndexedForces))
+			return createNewForces(b);
+
+		IndexedForces f = (IndexedForces) forces;
+		f.factory = this;
+		f.reset();
+		f.randomPosition();
+
+		return f;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#boidsAdded(java.util.Collection)
+	 */
+	public void boidsAdded(Collection<Boid> boids) {
+		// The next build will see them.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#boidsRemoved(java.util.Collection
+	 * )
+	 */
+	public void boidsRemoved(Collection<Boid> boids) {
+		// The next build will forget them.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForcesFactory#step()
+	 */
+	public void step() {
+		build();
+
+		for (Boid b : ctx.<Boid> getEachNode())
+			b.getForces().compute();
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			BoidForces f = b.getForces();
+			f.getPosition().copy(f.getNextPosition());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#resize(org.miv.pherd.geom.Point3,
+	 * org.miv.pherd.geom.Point3)
+	 */
+	public void resize(Point3 low, Point3 high) {
+		// The next build reads the new anchors.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidForcesFactory#end()
+	 */
+	public void end() {
+		clear();
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.graphstream.boids.Boid;
+import org.miv.pherd.geom.Point3;
+
+/**
+ * Morton (Z-order) codes of positions.
+ * 
+ * <p>
+ * The Morton code of a point interleaves the bits of its quantized
+ * coordinates. Points close in space tend to have close codes, so sorting
+ * boids by their code before inserting them in a spatial index fills it region
+ * by region, instead of jumping across the whole space at each insertion.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public final class Morton {
+	/**
+	 * Bits per coordinate for 2D codes.
+	 */
+	public static final int BITS_2D = 16;
+
+	/**
+	 * Bits per coordinate for 3D codes.
+	 */
+	public static final int BITS_3D = 10;
+
+	private Morton() {
+	}
+
+	/**
+	 * Spread the 16 lower bits of a value so that there is one zero bit
+	 * between each of them.
+	 */
+	public static long spread2(long v) {
+		v &= 0xFFFFL;
+		v = (v | (v << 8)) & 0x00FF00FFL;
+		v = (v | (v << 4)) & 0x0F0F0F0FL;
+		v = (v | (v << 2)) & 0x33333333L;
+		v = (v | (v << 1)) & 0x55555555L;
+		return v;
+	}
+
+	/**
+	 * Spread the 10 lower bits of a value so that there are two zero bits
+	 * between each of them.
+	 */
+	public static long spread3(long v) {
+		v &= 0x3FFL;
+		v = (v | (v << 16)) & 0x30000FFL;
+		v = (v | (v << 8)) & 0x300F00FL;
+		v = (v | (v << 4)) & 0x30C30C3L;
+		v = (v | (v << 2)) & 0x9249249L;
+		return v;
+	}
+
+	/**
+	 * Code of quantized 2D coordinates, each in [0..2^16[.
+	 */
+	public static long encode(int x, int y) {
+		return spread2(x) | (spread2(y) << 1);
+	}
+
+	/**
+	 * Code of quantized 3D coordinates, each in [0..2^10[.
+	 */
+	public static long encode(int x, int y, int z) {
+		return spread3(x) | (spread3(y) << 1) | (spread3(z) << 2);
+	}
+
+	/**
+	 * Quantize a coordinate in [lo..hi] on the given number of bits. Values
+	 * outside are clamped.
+	 */
+	public static int quantize(double v, double lo, double hi, int bits) {
+		int max = (1 << bits) - 1;
+		double t = hi > lo ? (v - lo) / (hi - lo) : 0;
+		int q = (int) (t * max);
+
+		return q < 0 ? 0 : (q > max ? max : q);
+	}
+
+	/**
+	 * Code of a position in the space [lo..hi].
+	 * 
+	 * @param p
+	 *            The position.
+	 * @param lo
+	 *            The lowest point of space.
+	 * @param hi
+	 *            The highest point of space.
+	 * @param is3D
+	 *            Use the z coordinate.
+	 * @return The code, on 32 bits in 2D and 30 bits in 3D.
+	 */
+	public static long encode(Point3 p, Point3 lo, Point3 hi, boolean is3D) {
+		if (is3D)
+			return encode(quantize(p.x, lo.x, hi.x, BITS_3D),
+					quantize(p.y, lo.y, hi.y, BITS_3D),
+					quantize(p.z, lo.z, hi.z, BITS_3D));
+
+		return encode(quantize(p.x, lo.x, hi.x, BITS_2D),
+				quantize(p.y, lo.y, hi.y, BITS_2D));
+	}
+
+	/**
+	 * Sort boids by the Morton code of their position. The sort is stable.
+	 * 
+	 * @param boids
+	 *            The boids.
+	 * @param lo
+	 *            The lowest point of space.
+	 * @param hi
+	 *            The highest point of space.
+	 * @param is3D
+	 *            Use the z coordinate.
+	 * @return A new list with the boids in Morton order.
+	 */
+	public static List<Boid> sort(Collection<Boid> boids, Point3 lo,
+			Point3 hi, boolean is3D) {
+		Boid[] array = boids.toArray(new Boid[boids.size()]);
+		long[] keys = new long[array.length];
+
+		//
+		// The code is in the high bits and the index in the low ones, so that
+		// sorting the keys sorts the indices by code, then by index. The sign
+		// bit is flipped so that the signed sort gives the unsigned order.
+		//
+
+		for (int i = 0; i < array.length; i++)
+			keys[i] = ((encode(array[i].getPosition(), lo, hi, is3D) << 32) | i)
+					^ Long.MIN_VALUE;
+
+		Arrays.sort(keys);
+
+		ArrayList<Boid> sorted = new ArrayList<Boid>(array.length);
+
+		for (int i = 0; i < keys.length; i++)
+			sorted.add(array[(int) (keys[i] & 0xFFFFFFFFL)]);
+
+		return sorted;
+	}
+}
@@ -60,6 +60,22 @@ public class GreedyForces extends BoidForces {
 		nextPosition.copy(position);
 	}
 
+	/**
+	 * Place the boid at a random position, the same way the constructor does.
+	 * Used when the boid is recycled.
+	 */
+	public void randomPosition() {
+		BoidGraph ctx = (BoidGraph) boid.getGraph();
+		Random r = ctx.getRandom();
+		Point3 lo = ctx.getLowAnchor();
+		Point3 hi = ctx.getHighAnchor();
+
+		position.x = r.nextDouble() * (hi.x - lo.x) + lo.x;
+		position.y = r.nextDouble() * (hi.y - lo.y) + lo.y;
+		position.z = 0;
+		nextPosition.copy(position);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -88,7 +104,7 @@ public class GreedyForces extends BoidForces {
 		LinkedList<Boid> contacts = new LinkedList<Boid>();
 
 		for (Boid b : g.<Boid> getEachNode()) {
-			if (isVisible(boid, b.getPosition()))
+			if (isVisible(boid, b))
 				contacts.add(b);
 		}
 
@@ -28,6 +28,8 @@
  */
 package org.graphstream.boids.forces.greedy;
 
+import java.util.Collection;
+
 import org.graphstream.boids.Boid;
 import org.graphstream.boids.BoidForces;
 import org.graphstream.boids.BoidForcesFactory;
@@ -61,6 +63,45 @@ public class GreedyForcesFactory implements BoidForcesFactory {
 		return new GreedyForces(b);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#recycleForces(org.graphstream
+	 * .boids.Boid, org.graphstream.boids.BoidForces)
+	 */
+	public BoidForces recycleForces(Boid b, BoidForces forces) {
+		if (!(forces instanceof GreedyForces))
+			return createNewForces(b);
+
+		GreedyForces f = (GreedyForces) forces;
+		f.reset();
+		f.randomPosition();
+
+		return f;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#boidsAdded(java.util.Collection)
+	 */
+	public void boidsAdded(Collection<Boid> boids) {
+		// Nothing to do
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#boidsRemoved(java.util.Collection
+	 * )
+	 */
+	public void boidsRemoved(Collection<Boid> boids) {
+		// Nothing to do
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
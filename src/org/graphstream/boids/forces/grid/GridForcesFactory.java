@@ -0,0 +1,324 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.grid;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.BoidSpecies;
+import org.graphstream.boids.forces.IndexedForcesFactory;
+import org.miv.pherd.geom.Point3;
+
+/**
+ * A forces system using a hierarchy of regular grids.
+ * 
+ * <p>
+ * Level <code>l</code> of the hierarchy uses cells whose side is
+ * <code>2^l</code> times the smallest view zone of all species. Each species
+ * queries the first level whose cells are at least as large as its own view
+ * zone, so that a search never looks at more than three cells per axis, and a
+ * species with a small view zone does not have to sort through the content of
+ * cells made for a species that sees far. Only the levels used by at least one
+ * species are built.
+ * </p>
+ * 
+ * <p>
+ * Each level is stored as a list of boids sorted by cell, with the offset of
+ * the first boid of each cell. The grids cover the area of the simulation and
+ * are rebuilt at each step with a counting sort.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class GridForcesFactory extends IndexedForcesFactory {
+	/**
+	 * Maximum number of cells in a level. Cells are enlarged to stay below.
+	 */
+	public static final int MAX_CELLS = 1 << 22;
+
+	/**
+	 * Maximum number of levels.
+	 */
+	public static final int MAX_LEVELS = 16;
+
+	/**
+	 * The levels, null if no species uses them.
+	 */
+	protected Level[] levels = new Level[MAX_LEVELS];
+
+	/**
+	 * Level used by each species handle, -1 if the species sees nothing.
+	 */
+	protected int[] speciesLevel = new int[0];
+
+	/**
+	 * All the boids, in node order.
+	 */
+	protected Boid[] all = new Boid[0];
+
+	/**
+	 * Number of boids in {@link #all}.
+	 */
+	protected int count;
+
+	public GridForcesFactory(BoidGraph ctx) {
+		this(ctx, false);
+	}
+
+	public GridForcesFactory(BoidGraph ctx, boolean is3D) {
+		super(ctx, is3D);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#build()
+	 */
+	protected void build() {
+		int n = ctx.getSpeciesHandleCapacity();
+		double min = Double.MAX_VALUE;
+
+		for (int i = 0; i < n; i++) {
+			BoidSpecies species = ctx.getSpecies(i);
+
+			if (species != null && species.getParameters().viewZone > 0)
+				min = Math.min(min, species.getParameters().viewZone);
+		}
+
+		if (speciesLevel.length < n)
+			speciesLevel = new int[n];
+
+		boolean[] used = new boolean[MAX_LEVELS];
+
+		for (int i = 0; i < n; i++) {
+			BoidSpecies species = ctx.getSpecies(i);
+			double vz = species == null ? 0 : species.getParameters().viewZone;
+
+			if (vz > 0) {
+				int l = (int) Math.ceil(Math.log(vz / min) / Math.log(2) - 1e-9);
+
+				l = Math.max(0, Math.min(MAX_LEVELS - 1, l));
+				speciesLevel[i] = l;
+				used[l] = true;
+			} else {
+				speciesLevel[i] = -1;
+			}
+		}
+
+		count = ctx.getNodeCount();
+
+		if (all.length < count)
+			all = new Boid[count];
+
+		int i = 0;
+
+		for (Boid b : ctx.<Boid> getEachNode())
+			all[i++] = b;
+
+		for (int l = 0; l < MAX_LEVELS; l++) {
+			if (used[l]) {
+				if (levels[l] == null)
+					levels[l] = new Level();
+
+				levels[l].build(min * Math.pow(2, l));
+			} else {
+				levels[l] = null;
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#clear()
+	 */
+	protected void clear() {
+		for (int l = 0; l < MAX_LEVELS; l++)
+			levels[l] = null;
+
+		all = new Boid[0];
+		count = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#getNeighborhood(org
+	 * .graphstream.boids.Boid, java.util.List)
+	 */
+	protected void getNeighborhood(Boid b, List<Boid> contacts) {
+		int h = b.getSpecies().getHandle();
+
+		if (h >= speciesLevel.length || speciesLevel[h] < 0)
+			return;
+
+		Level level = levels[speciesLevel[h]];
+
+		if (level != null)
+			level.search(b, b.getSpecies().getParameters().viewZone, contacts);
+	}
+
+	/**
+	 * One grid of the hierarchy.
+	 */
+	protected class Level {
+		/**
+		 * Side of a cell.
+		 */
+		double size;
+
+		/**
+		 * Low corner of the grid.
+		 */
+		double x0, y0, z0;
+
+		/**
+		 * Number of cells along each axis.
+		 */
+		int nx, ny, nz;
+
+		/**
+		 * Index in {@link #boids} of the first boid of each cell, plus one
+		 * last entry for the end.
+		 */
+		int[] start = new int[0];
+
+		/**
+		 * Cell of each boid of {@link GridForcesFactory#all}.
+		 */
+		int[] cells = new int[0];
+
+		/**
+		 * The boids sorted by cell.
+		 */
+		Boid[] boids = new Boid[0];
+
+		void build(double cellSize) {
+			Point3 lo = ctx.getLowAnchor();
+			Point3 hi = ctx.getHighAnchor();
+
+			size = cellSize;
+
+			do {
+				nx = Math.max(1, (int) Math.ceil((hi.x - lo.x) / size));
+				ny = Math.max(1, (int) Math.ceil((hi.y - lo.y) / size));
+				nz = is3D ? Math.max(1, (int) Math.ceil((hi.z - lo.z) / size))
+						: 1;
+
+				if ((long) nx * ny * nz > MAX_CELLS)
+					size *= 2;
+				else
+					break;
+			} while (true);
+
+			x0 = lo.x;
+			y0 = lo.y;
+			z0 = lo.z;
+
+			int n = nx * ny * nz;
+
+			if (start.length < n + 1)
+				start = new int[n + 1];
+			else
+				Arrays.fill(start, 0, n + 1, 0);
+
+			if (cells.length < count) {
+				cells = new int[count];
+				boids = new Boid[count];
+			}
+
+			//
+			// Counting sort of the boids by cell.
+			//
+
+			for (int i = 0; i < count; i++) {
+				Point3 p = all[i].getPosition();
+				int c = cell(cx(p.x), cy(p.y), cz(p.z));
+
+				cells[i] = c;
+				start[c + 1]++;
+			}
+
+			for (int c = 0; c < n; c++)
+				start[c + 1] += start[c];
+
+			for (int i = 0; i < count; i++)
+				boids[start[cells[i]]++] = all[i];
+
+			for (int c = n; c > 0; c--)
+				start[c] = start[c - 1];
+
+			start[0] = 0;
+		}
+
+		int cx(double x) {
+			return Math.max(0, Math.min(nx - 1, (int) ((x - x0) / size)));
+		}
+
+		int cy(double y) {
+			return Math.max(0, Math.min(ny - 1, (int) ((y - y0) / size)));
+		}
+
+		int cz(double z) {
+			return is3D ? Math.max(0, Math.min(nz - 1, (int) ((z - z0) / size)))
+					: 0;
+		}
+
+		int cell(int x, int y, int z) {
+			return (z * ny + y) * nx + x;
+		}
+
+		void search(Boid source, double radius, List<Boid> contacts) {
+			Point3 p = source.getPosition();
+			int xa = cx(p.x - radius), xb = cx(p.x + radius);
+			int ya = cy(p.y - radius), yb = cy(p.y + radius);
+			int za = cz(p.z - radius), zb = cz(p.z + radius);
+			BoidForces forces = source.getForces();
+
+			for (int z = za; z <= zb; z++) {
+				for (int y = ya; y <= yb; y++) {
+					for (int x = xa; x <= xb; x++) {
+						int c = cell(x, y, z);
+
+						for (int i = start[c]; i < start[c + 1]; i++) {
+							Boid b = boids[i];
+
+							if (b != source && forces.isVisible(source, b))
+								contacts.add(b);
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.hash;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.BoidSpecies;
+import org.graphstream.boids.forces.IndexedForcesFactory;
+import org.miv.pherd.geom.Point3;
+
+/**
+ * A forces system using a grid where only occupied cells exist.
+ * 
+ * <p>
+ * Cells are as large as the largest view zone of all species, and are found
+ * through a hash map keyed by their packed coordinates. The memory used
+ * therefore depends on the number of occupied cells rather than on the size
+ * of the area, which suits large areas with a few tight flocks, and allows
+ * the {@link UnboundedHashForcesFactory unbounded} variant where boids are not
+ * stopped by walls at all.
+ * </p>
+ * 
+ * <p>
+ * Coordinates are packed on 21 bits per axis. Cells further apart than that
+ * share a key, which only costs a few more distance tests since visibility is
+ * always checked.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class HashForcesFactory extends IndexedForcesFactory {
+	protected static final int BITS = 21;
+
+	protected static final long MASK = (1L << BITS) - 1;
+
+	/**
+	 * Cell number of each occupied cell key.
+	 */
+	protected LongIntMap cells = new LongIntMap();
+
+	/**
+	 * Index in {@link #boids} of the first boid of each cell, plus one last
+	 * entry for the end.
+	 */
+	protected int[] start = new int[16];
+
+	/**
+	 * Cell number of each boid of {@link #all}.
+	 */
+	protected int[] cellOf = new int[0];
+
+	/**
+	 * All the boids, in node order.
+	 */
+	protected Boid[] all = new Boid[0];
+
+	/**
+	 * The boids sorted by cell.
+	 */
+	protected Boid[] boids = new Boid[0];
+
+	/**
+	 * Side of a cell.
+	 */
+	protected double size = 1;
+
+	public HashForcesFactory(BoidGraph ctx) {
+		this(ctx, false);
+	}
+
+	public HashForcesFactory(BoidGraph ctx, boolean is3D) {
+		super(ctx, is3D);
+	}
+
+	/**
+	 * Key of the cell at the given cell coordinates.
+	 */
+	protected long key(long x, long y, long z) {
+		return ((x & MASK) << (2 * BITS)) | ((y & MASK) << BITS) | (z & MASK);
+	}
+
+	protected long coordinate(double v) {
+		return (long) Math.floor(v / size);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#build()
+	 */
+	protected void build() {
+		double max = 0;
+
+		for (int i = 0; i < ctx.getSpeciesHandleCapacity(); i++) {
+			BoidSpecies species = ctx.getSpecies(i);
+
+			if (species != null)
+				max = Math.max(max, species.getParameters().viewZone);
+		}
+
+		if (max > 0)
+			size = max;
+
+		int count = ctx.getNodeCount();
+
+		if (all.length < count) {
+			all = new Boid[count];
+			boids = new Boid[count];
+			cellOf = new int[count];
+		}
+
+		cells.clear();
+
+		//
+		// Number the occupied cells in order of appearance and count their
+		// boids, then sort the boids by cell.
+		//
+
+		int n = 0;
+		int i = 0;
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			Point3 p = b.getPosition();
+			long k = key(coordinate(p.x), coordinate(p.y),
+					is3D ? coordinate(p.z) : 0);
+			int c = cells.get(k, -1);
+
+			if (c < 0) {
+				c = n++;
+				cells.put(k, c);
+
+				if (start.length < n + 1)
+					start = Arrays.copyOf(start, Math.max(16, (n + 1) * 2));
+
+				start[n] = 0;
+			}
+
+			all[i] = b;
+			cellOf[i++] = c;
+			start[c + 1]++;
+		}
+
+		start[0] = 0;
+
+		for (int c = 0; c < n; c++)
+			start[c + 1] += start[c];
+
+		for (i = 0; i < count; i++)
+			boids[start[cellOf[i]]++] = all[i];
+
+		for (int c = n; c > 0; c--)
+			start[c] = start[c - 1];
+
+		start[0] = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#clear()
+	 */
+	protected void clear() {
+		cells.clear();
+		all = new Boid[0];
+		boids = new Boid[0];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#getNeighborhood(org
+	 * .graphstream.boids.Boid, java.util.List)
+	 */
+	protected void getNeighborhood(Boid source, List<Boid> contacts) {
+		double radius = source.getSpecies().getParameters().viewZone;
+
+		if (radius <= 0)
+			return;
+
+		Point3 p = source.getPosition();
+		BoidForces forces = source.getForces();
+		long xa = coordinate(p.x - radius), xb = coordinate(p.x + radius);
+		long ya = coordinate(p.y - radius), yb = coordinate(p.y + radius);
+		long za = is3D ? coordinate(p.z - radius) : 0;
+		long zb = is3D ? coordinate(p.z + radius) : 0;
+
+		for (long z = za; z <= zb; z++) {
+			for (long y = ya; y <= yb; y++) {
+				for (long x = xa; x <= xb; x++) {
+					int c = cells.get(key(x, y, z), -1);
+
+					if (c < 0)
+						continue;
+
+					for (int i = start[c]; i < start[c + 1]; i++) {
+						Boid b = boids[i];
+
+						if (b != source && forces.isVisible(source, b))
+							contacts.add(b);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.hash;
+
+import java.util.Arrays;
+
+/**
+ * A map from non negative long keys to int values, with open addressing.
+ * 
+ * <p>
+ * Keys and values are stored in two arrays, so that a lookup neither boxes
+ * the key nor follows a pointer to an entry. Entries cannot be removed one by
+ * one, the map is meant to be cleared and filled again.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+class LongIntMap {
+	/**
+	 * Marks a free slot. Keys must not be negative.
+	 */
+	static final long FREE = -1;
+
+	long[] keys;
+
+	int[] values;
+
+	int size;
+
+	int mask;
+
+	LongIntMap() {
+		this(64);
+	}
+
+	LongIntMap(int capacity) {
+		int n = Integer.highestOneBit(Math.max(4, capacity - 1)) << 1;
+
+		keys = new long[n];
+		values = new int[n];
+		mask = n - 1;
+
+		Arrays.fill(keys, FREE);
+	}
+
+	static int hash(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+
+	/**
+	 * Value of a key.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @param missing
+	 *            Value returned if the key is not in the map.
+	 * @return The value of the key or missing.
+	 */
+	int get(long key, int missing) {
+		int i = hash(key) & mask;
+
+		while (keys[i] != FREE) {
+			if (keys[i] == key)
+				return values[i];
+
+			i = (i + 1) & mask;
+		}
+
+		return missing;
+	}
+
+	/**
+	 * Associate a value to a key.
+	 * 
+	 * @param key
+	 *            The key, not negative.
+	 * @param value
+	 *            The value.
+	 */
+	void put(long key, int value) {
+		if (size * 2 >= keys.length)
+			grow();
+
+		int i = hash(key) & mask;
+
+		while (keys[i] != FREE) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, FREE);
+			size = 0;
+		}
+	}
+
+	protected void grow() {
+		long[] k = keys;
+		int[] v = values;
+
+		keys = new long[k.length * 2];
+		values = new int[k.length * 2];
+		mask = keys.length - 1;
+		size = 0;
+
+		Arrays.fill(keys, FREE);
+
+		for (int i = 0; i < k.length; i++) {
+			if (k[i] != FREE)
+				put(k[i], v[i]);
+		}
+	}
+}
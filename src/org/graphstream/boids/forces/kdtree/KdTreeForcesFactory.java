@@ -0,0 +1,476 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.kdtree;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidCollector;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.SpeciesParameters;
+import org.graphstream.boids.forces.IndexedForcesFactory;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * A forces system using a k-d tree rebuilt at each step.
+ * 
+ * <p>
+ * The tree is implicit and stored in flat arrays: the boids of a node occupy
+ * a range of the arrays, the median boid along the split axis sits in the
+ * middle of the range, the boids before it form the left child and the boids
+ * after it the right child. Since splits follow the medians, the tree stays
+ * balanced however clustered the boids are, where a n-tree goes deep in dense
+ * flocks and a grid gets crowded cells. The split axis of each node is the
+ * one along which its boids are the most spread.
+ * </p>
+ * 
+ * <p>
+ * Large populations are built in parallel, both halves of a node being
+ * independent once its median is placed.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class KdTreeForcesFactory extends IndexedForcesFactory {
+	/**
+	 * Nodes with at most this number of boids are not split.
+	 */
+	public static final int LEAF_SIZE = 8;
+
+	/**
+	 * Nodes with less boids than this are built by the current thread.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 12;
+
+	/**
+	 * Pool shared by all the trees for parallel builds.
+	 */
+	protected static ForkJoinPool pool;
+
+	/**
+	 * The boids in tree order.
+	 */
+	protected Boid[] boids = new Boid[0];
+
+	/**
+	 * Coordinates of the boids in tree order.
+	 */
+	protected double[][] coords = new double[3][0];
+
+	/**
+	 * Split axis of the node whose median is at a given index.
+	 */
+	protected byte[] axes = new byte[0];
+
+	/**
+	 * Number of boids in the tree.
+	 */
+	protected int count;
+
+	public KdTreeForcesFactory(BoidGraph ctx) {
+		this(ctx, false);
+	}
+
+	public KdTreeForcesFactory(BoidGraph ctx, boolean is3D) {
+		super(ctx, is3D);
+	}
+
+	protected static synchronized ForkJoinPool getPool() {
+		if (pool == null)
+			pool = new ForkJoinPool();
+
+		return pool;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#build()
+	 */
+	protected void build() {
+		count = ctx.getNodeCount();
+
+		if (boids.length < count) {
+			boids = new Boid[count];
+			coords = new double[3][count];
+			axes = new byte[count];
+		}
+
+		int i = 0;
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			Point3 p = b.getPosition();
+
+			boids[i] = b;
+			coords[0][i] = p.x;
+			coords[1][i] = p.y;
+			coords[2][i] = p.z;
+			i++;
+		}
+
+		Build root = new Build(0, count);
+
+		if (count >= PARALLEL_THRESHOLD)
+			getPool().invoke(root);
+		else
+			root.compute();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#clear()
+	 */
+	protected void clear() {
+		boids = new Boid[0];
+		coords = new double[3][0];
+		axes = new byte[0];
+		count = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#getNeighborhood(org
+	 * .graphstream.boids.Boid, java.util.List)
+	 */
+	protected void getNeighborhood(Boid source, List<Boid> contacts) {
+		SpeciesParameters params = source.getSpecies().getParameters();
+		BoidForces forces = source.getForces();
+		int from = contacts.size();
+
+		if (params.viewZone <= 0)
+			return;
+
+		if (params.angleOfView > -1)
+			coneQuery(source.getPosition(), forces.getDirection(),
+					params.viewZone, params.angleOfView, contacts);
+		else
+			radiusQuery(source.getPosition(), params.viewZone, contacts);
+
+		//
+		// Keep only the boids really visible, in place.
+		//
+
+		int to = from;
+
+		for (int i = from; i < contacts.size(); i++) {
+			Boid b = contacts.get(i);
+
+			if (b != source && forces.isVisible(source, b))
+				contacts.set(to++, b);
+		}
+
+		while (contacts.size() > to)
+			contacts.remove(contacts.size() - 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#collectNeighborhood
+	 * (org.graphstream.boids.Boid, org.graphstream.boids.BoidCollector)
+	 */
+	@Override
+	protected void collectNeighborhood(Boid source, BoidCollector collector) {
+		double vz = source.getSpecies().getParameters().viewZone;
+
+		if (vz > 0)
+			collect(0, count, source, source.getPosition(), vz * vz, collector);
+	}
+
+	/**
+	 * Search a node for visible boids to offer to a collector, the near side
+	 * first so that the radius of the collector shrinks as soon as possible.
+	 */
+	protected void collect(int lo, int hi, Boid source, Point3 p, double r2,
+			BoidCollector collector) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; i++)
+				offer(i, source, p, r2, collector);
+
+			return;
+		}
+
+		int mid = (lo + hi) >>> 1;
+		int axis = axes[mid];
+		double d = (axis == 0 ? p.x : (axis == 1 ? p.y : p.z))
+				- coords[axis][mid];
+
+		offer(mid, source, p, r2, collector);
+
+		if (d < 0) {
+			collect(lo, mid, source, p, r2, collector);
+
+			if (d * d <= Math.min(r2, collector.getRadius2()))
+				collect(mid + 1, hi, source, p, r2, collector);
+		} else {
+			collect(mid + 1, hi, source, p, r2, collector);
+
+			if (d * d <= Math.min(r2, collector.getRadius2()))
+				collect(lo, mid, source, p, r2, collector);
+		}
+	}
+
+	protected void offer(int i, Boid source, Point3 p, double r2,
+			BoidCollector collector) {
+		double vx = coords[0][i] - p.x;
+		double vy = coords[1][i] - p.y;
+		double vz = coords[2][i] - p.z;
+		double d2 = vx * vx + vy * vy + vz * vz;
+
+		if (d2 <= r2 && d2 < collector.getRadius2() && boids[i] != source
+				&& source.getForces().isVisible(source, boids[i]))
+			collector.offer(boids[i], d2);
+	}
+
+	/**
+	 * Find the boids at most at a given distance of a point.
+	 * 
+	 * @param center
+	 *            The point.
+	 * @param radius
+	 *            The distance.
+	 * @param result
+	 *            Where to add the boids found.
+	 */
+	public void radiusQuery(Point3 center, double radius, List<Boid> result) {
+		search(0, count, center.x, center.y, center.z, radius * radius, 0, 0,
+				0, -2, result);
+	}
+
+	/**
+	 * Find the boids at most at a given distance of a point and inside a cone
+	 * around a direction.
+	 * 
+	 * @param center
+	 *            The apex of the cone.
+	 * @param dir
+	 *            The axis of the cone, not necessarily normalized.
+	 * @param radius
+	 *            The distance.
+	 * @param cosAngle
+	 *            Cosine of the half angle of the cone. Boids are kept if the
+	 *            cosine of their angle to the axis is strictly greater.
+	 * @param result
+	 *            Where to add the boids found.
+	 */
+	public void coneQuery(Point3 center, Vector3 dir, double radius,
+			double cosAngle, List<Boid> result) {
+		double dx = dir.data[0], dy = dir.data[1], dz = dir.data[2];
+		double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+		if (len > 0) {
+			dx /= len;
+			dy /= len;
+			dz /= len;
+		}
+
+		search(0, count, center.x, center.y, center.z, radius * radius, dx,
+				dy, dz, cosAngle, result);
+	}
+
+	/**
+	 * Search a node. A cone with a cosine of -2 accepts everything.
+	 */
+	protected void search(int lo, int hi, double x, double y, double z,
+			double r2, double dx, double dy, double dz, double cosAngle,
+			List<Boid> result) {
+		while (hi - lo > LEAF_SIZE) {
+			int mid = (lo + hi) >>> 1;
+			int axis = axes[mid];
+			double d = (axis == 0 ? x : (axis == 1 ? y : z))
+					- coords[axis][mid];
+
+			test(mid, x, y, z, r2, dx, dy, dz, cosAngle, result);
+
+			//
+			// Search the near side now, and the far side only if the sphere
+			// crosses the split plane.
+			//
+
+			if (d < 0) {
+				if (d * d <= r2)
+					search(mid + 1, hi, x, y, z, r2, dx, dy, dz, cosAngle,
+							result);
+
+				hi = mid;
+			} else {
+				if (d * d <= r2)
+					search(lo, mid, x, y, z, r2, dx, dy, dz, cosAngle, result);
+
+				lo = mid + 1;
+			}
+		}
+
+		for (int i = lo; i < hi; i++)
+			test(i, x, y, z, r2, dx, dy, dz, cosAngle, result);
+	}
+
+	protected void test(int i, double x, double y, double z, double r2,
+			double dx, double dy, double dz, double cosAngle,
+			List<Boid> result) {
+		double vx = coords[0][i] - x;
+		double vy = coords[1][i] - y;
+		double vz = coords[2][i] - z;
+		double d2 = vx * vx + vy * vy + vz * vz;
+
+		if (d2 > r2)
+			return;
+
+		if (cosAngle > -2 && d2 > 0) {
+			double cos = (vx * dx + vy * dy + vz * dz) / Math.sqrt(d2);
+
+			if (cos <= cosAngle)
+				return;
+		}
+
+		result.add(boids[i]);
+	}
+
+	protected void swap(int i, int j) {
+		Boid b = boids[i];
+		boids[i] = boids[j];
+		boids[j] = b;
+
+		for (int a = 0; a < 3; a++) {
+			double v = coords[a][i];
+			coords[a][i] = coords[a][j];
+			coords[a][j] = v;
+		}
+	}
+
+	/**
+	 * Place the k-th smallest boid along an axis at index k, smaller boids
+	 * before and larger ones after.
+	 */
+	protected void select(int lo, int hi, int k, int axis) {
+		double[] c = coords[axis];
+
+		hi--;
+
+		while (hi > lo) {
+			int m = (lo + hi) >>> 1;
+
+			// Median of three as pivot, moved to hi.
+
+			if (c[m] < c[lo])
+				swap(m, lo);
+			if (c[hi] < c[lo])
+				swap(hi, lo);
+			if (c[m] < c[hi])
+				swap(m, hi);
+
+			double pivot = c[hi];
+			int store = lo;
+
+			for (int i = lo; i < hi; i++) {
+				if (c[i] < pivot)
+					swap(i, store++);
+			}
+
+			swap(store, hi);
+
+			if (store == k)
+				return;
+			else if (store < k)
+				lo = store + 1;
+			else
+				hi = store - 1;
+		}
+	}
+
+	/**
+	 * Build of the node covering a range of the arrays.
+	 */
+	protected class Build extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		int lo, hi;
+
+		Build(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			while (hi - lo > LEAF_SIZE) {
+				int mid = (lo + hi) >>> 1;
+				int axis = widestAxis(lo, hi);
+
+				select(lo, hi, mid, axis);
+				axes[mid] = (byte) axis;
+
+				if (hi - lo >= PARALLEL_THRESHOLD) {
+					invokeAll(new Build(lo, mid), new Build(mid + 1, hi));
+					return;
+				}
+
+				new Build(lo, mid).compute();
+				lo = mid + 1;
+			}
+		}
+
+		int widestAxis(int lo, int hi) {
+			int best = 0;
+			double extent = -1;
+
+			for (int a = 0; a < (is3D ? 3 : 2); a++) {
+				double[] c = coords[a];
+				double min = c[lo], max = c[lo];
+
+				for (int i = lo + 1; i < hi; i++) {
+					if (c[i] < min)
+						min = c[i];
+					else if (c[i] > max)
+						max = c[i];
+				}
+
+				if (max - min > extent) {
+					extent = max - min;
+					best = a;
+				}
+			}
+
+			return best;
+		}
+	}
+}
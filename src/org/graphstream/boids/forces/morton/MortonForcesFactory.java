@@ -0,0 +1,460 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.morton;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.BoidSpecies;
+import org.graphstream.boids.forces.IndexedForcesFactory;
+import org.graphstream.boids.forces.Morton;
+import org.graphstream.stream.ElementSink;
+import org.miv.pherd.geom.Point3;
+
+/**
+ * A forces system using a cell list ordered along a Z-order (Morton) curve.
+ * 
+ * <p>
+ * The boids are kept sorted by the Morton code of their cell, cells being as
+ * large as the largest view zone of all species. Positions are copied in
+ * arrays following the same order, and each occupied cell is known by the
+ * range it occupies in these arrays. Cells close in space being mostly close
+ * on the curve, a neighborhood search reads memory almost linearly, and so do
+ * the force computations since boids are processed in the same order.
+ * </p>
+ * 
+ * <p>
+ * Every {@link #getReorderPeriod()} steps, or when boids come or go, the boids
+ * are sorted again from scratch. In between, boids seldom change cells from
+ * one step to the next, so the order is only repaired with an insertion sort.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class MortonForcesFactory extends IndexedForcesFactory implements
+		ElementSink {
+	/**
+	 * The boids sorted by cell code.
+	 */
+	protected Boid[] order = new Boid[0];
+
+	/**
+	 * Cell code of each boid of {@link #order}.
+	 */
+	protected long[] codes = new long[0];
+
+	/**
+	 * Positions of the boids of {@link #order}.
+	 */
+	protected double[] xs = new double[0], ys = new double[0],
+			zs = new double[0];
+
+	/**
+	 * Number of boids in {@link #order}.
+	 */
+	protected int count;
+
+	/**
+	 * Codes of the occupied cells, sorted.
+	 */
+	protected long[] cellCodes = new long[0];
+
+	/**
+	 * Offset of the first boid of each occupied cell, plus one last entry for
+	 * the end.
+	 */
+	protected int[] cellStart = new int[1];
+
+	/**
+	 * Number of occupied cells.
+	 */
+	protected int cellCount;
+
+	/**
+	 * Side of a cell, and number of cells along an axis.
+	 */
+	protected double size;
+
+	protected int side;
+
+	/**
+	 * Low corner of the grid.
+	 */
+	protected Point3 lo = new Point3();
+
+	/**
+	 * Number of steps between two full sorts.
+	 */
+	protected int reorderPeriod = 16;
+
+	/**
+	 * Steps since the last full sort.
+	 */
+	protected int sinceReorder;
+
+	/**
+	 * Set when boids are added or removed, to force a full sort.
+	 */
+	protected boolean changed = true;
+
+	public MortonForcesFactory(BoidGraph ctx) {
+		this(ctx, false);
+	}
+
+	public MortonForcesFactory(BoidGraph ctx, boolean is3D) {
+		super(ctx, is3D);
+	}
+
+	public int getReorderPeriod() {
+		return reorderPeriod;
+	}
+
+	/**
+	 * Set the number of steps between two full sorts of the boids.
+	 * 
+	 * @param period
+	 *            The number of steps, at least 1.
+	 */
+	public void setReorderPeriod(int period) {
+		reorderPeriod = Math.max(1, period);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#init()
+	 */
+	@Override
+	public void init() {
+		changed = true;
+		super.init();
+		ctx.addElementSink(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#end()
+	 */
+	@Override
+	public void end() {
+		ctx.removeElementSink(this);
+		super.end();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#step()
+	 */
+	@Override
+	public void step() {
+		build();
+
+		for (int i = 0; i < count; i++)
+			order[i].getForces().compute();
+
+		for (int i = 0; i < count; i++) {
+			BoidForces f = order[i].getForces();
+			f.getPosition().copy(f.getNextPosition());
+		}
+	}
+
+	/**
+	 * Code of the cell containing a position.
+	 */
+	protected long code(Point3 p) {
+		int x = cell(p.x, lo.x);
+		int y = cell(p.y, lo.y);
+
+		return is3D ? Morton.encode(x, y, cell(p.z, lo.z)) : Morton.encode(x,
+				y);
+	}
+
+	protected int cell(double v, double low) {
+		int c = (int) Math.floor((v - low) / size);
+		return c < 0 ? 0 : (c >= side ? side - 1 : c);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#build()
+	 */
+	protected void build() {
+		Point3 low = ctx.getLowAnchor();
+		Point3 high = ctx.getHighAnchor();
+		double max = 0;
+		double extent = Math.max(high.x - low.x, high.y - low.y);
+		int bits = is3D ? Morton.BITS_3D : Morton.BITS_2D;
+
+		if (is3D)
+			extent = Math.max(extent, high.z - low.z);
+
+		for (int i = 0; i < ctx.getSpeciesHandleCapacity(); i++) {
+			BoidSpecies species = ctx.getSpecies(i);
+
+			if (species != null)
+				max = Math.max(max, species.getParameters().viewZone);
+		}
+
+		max = Math.max(max, extent / (1 << bits));
+
+		if (max != size || lo.x != low.x || lo.y != low.y || lo.z != low.z) {
+			size = max;
+			side = 1 << bits;
+			lo.copy(low);
+			changed = true;
+		}
+
+		if (changed || ++sinceReorder >= reorderPeriod)
+			sort();
+		else
+			repair();
+
+		//
+		// Copy positions in the same order and find the cell ranges.
+		//
+
+		if (cellCodes.length < count) {
+			cellCodes = new long[count];
+			cellStart = new int[count + 1];
+		}
+
+		cellCount = 0;
+
+		for (int i = 0; i < count; i++) {
+			Point3 p = order[i].getPosition();
+
+			xs[i] = p.x;
+			ys[i] = p.y;
+			zs[i] = p.z;
+
+			if (i == 0 || codes[i] != codes[i - 1]) {
+				cellCodes[cellCount] = codes[i];
+				cellStart[cellCount++] = i;
+			}
+		}
+
+		cellStart[cellCount] = count;
+	}
+
+	/**
+	 * Sort all the boids from scratch.
+	 */
+	protected void sort() {
+		count = ctx.getNodeCount();
+
+		if (order.length < count) {
+			order = new Boid[count];
+			codes = new long[count];
+			xs = new double[count];
+			ys = new double[count];
+			zs = new double[count];
+		}
+
+		Boid[] boids = new Boid[count];
+		long[] keys = new long[count];
+		int i = 0;
+
+		//
+		// Codes use at most 32 bits and indices 31, so the key is never
+		// negative, and the index makes the sort stable.
+		//
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			boids[i] = b;
+			keys[i] = (code(b.getPosition()) << 31) | i;
+			i++;
+		}
+
+		Arrays.sort(keys);
+
+		for (i = 0; i < count; i++) {
+			int k = (int) (keys[i] & 0x7FFFFFFF);
+
+			order[i] = boids[k];
+			codes[i] = keys[i] >>> 31;
+		}
+
+		Arrays.fill(order, count, order.length, null);
+		changed = false;
+		sinceReorder = 0;
+	}
+
+	/**
+	 * Update the codes and restore the order with an insertion sort, which is
+	 * linear when few boids changed cells.
+	 */
+	protected void repair() {
+		for (int i = 0; i < count; i++)
+			codes[i] = code(order[i].getPosition());
+
+		for (int i = 1; i < count; i++) {
+			long c = codes[i];
+
+			if (c >= codes[i - 1])
+				continue;
+
+			Boid b = order[i];
+			int j = i - 1;
+
+			while (j >= 0 && codes[j] > c) {
+				codes[j + 1] = codes[j];
+				order[j + 1] = order[j];
+				j--;
+			}
+
+			codes[j + 1] = c;
+			order[j + 1] = b;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#clear()
+	 */
+	protected void clear() {
+		Arrays.fill(order, null);
+		count = 0;
+		cellCount = 0;
+		changed = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#getNeighborhood(org
+	 * .graphstream.boids.Boid, java.util.List)
+	 */
+	protected void getNeighborhood(Boid source, List<Boid> contacts) {
+		double radius = source.getSpecies().getParameters().viewZone;
+
+		if (radius <= 0)
+			return;
+
+		Point3 p = source.getPosition();
+		BoidForces forces = source.getForces();
+		double r2 = radius * radius;
+		int xa = cell(p.x - radius, lo.x), xb = cell(p.x + radius, lo.x);
+		int ya = cell(p.y - radius, lo.y), yb = cell(p.y + radius, lo.y);
+		int za = is3D ? cell(p.z - radius, lo.z) : 0;
+		int zb = is3D ? cell(p.z + radius, lo.z) : 0;
+
+		for (int z = za; z <= zb; z++) {
+			for (int y = ya; y <= yb; y++) {
+				for (int x = xa; x <= xb; x++) {
+					long c = is3D ? Morton.encode(x, y, z) : Morton.encode(x,
+							y);
+					int k = Arrays.binarySearch(cellCodes, 0, cellCount, c);
+
+					if (k < 0)
+						continue;
+
+					for (int i = cellStart[k]; i < cellStart[k + 1]; i++) {
+						double dx = xs[i] - p.x;
+						double dy = ys[i] - p.y;
+						double dz = zs[i] - p.z;
+
+						if (dx * dx + dy * dy + dz * dz > r2)
+							continue;
+
+						Boid b = order[i];
+
+						if (b != source && forces.isVisible(source, b))
+							contacts.add(b);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#nodeAdded(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		changed = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		changed = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		changed = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#edgeAdded(java.lang.String, long,
+	 * java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#stepBegins(java.lang.String,
+	 * long, double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+	}
+}
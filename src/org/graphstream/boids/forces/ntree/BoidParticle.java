@@ -43,6 +43,11 @@ import org.miv.pherd.geom.Point3;
 public class BoidParticle extends Particle {
 	protected Boid b;
 
+	/**
+	 * True if the forces were already computed for the next move.
+	 */
+	protected boolean computed;
+
 	/**
 	 * New particle.
 	 * 
@@ -64,7 +69,11 @@ public class BoidParticle extends Particle {
 	 */
 	@Override
 	public void move(int time) {
-		b.getForces().compute();
+		if (computed)
+			computed = false;
+		else
+			b.getForces().compute();
+
 		moved = true;
 	}
 
@@ -90,6 +99,22 @@ public class BoidParticle extends Particle {
 		return b;
 	}
 
+	/**
+	 * Place the particle at a random position, the same way the constructor
+	 * does. Used when the boid is recycled.
+	 * 
+	 * @param ctx
+	 *            The set of global parameters.
+	 */
+	public void randomPosition(BoidGraph ctx) {
+		double x = ctx.getRandom().nextDouble() * (ctx.getArea() * 2)
+				- ctx.getArea();
+		double y = ctx.getRandom().nextDouble() * (ctx.getArea() * 2)
+				- ctx.getArea();
+
+		initPos(x, y, 0);
+	}
+
 	public void setPosition(double x, double y, double z) {
 		initPos(x, y, z);
 	}
@@ -0,0 +1,912 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.ntree;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidCollector;
+import org.graphstream.boids.BoidForces;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * A loose quadtree or octree of boids, stored in arrays.
+ * 
+ * <p>
+ * Cells and boids are identified by integers indexing parallel arrays. The
+ * children of a cell are allocated together as a block of consecutive cells,
+ * blocks freed by merges are kept in a free list and reused by later splits,
+ * and the boids of a cell form a linked list through an array. Nothing is
+ * allocated while boids move, and searching the tree needs no iterator.
+ * </p>
+ * 
+ * <p>
+ * A boid is placed in the deepest cell that contains it, and stays there as
+ * long as it remains in the loose bounds of this cell, that are
+ * {@link #LOOSENESS} times larger than the cell. Boids flying around the
+ * border of a cell are therefore not moved from one cell to another at each
+ * step. A boid outside of the bounds of all the children of a cell stays in
+ * this cell even if it has children.
+ * </p>
+ * 
+ * <p>
+ * Like {@link BoidCellData}, each cell knows the barycenter and the average
+ * direction of its boids, once {@link #updateAggregates()} is called.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class LooseNTree {
+	/**
+	 * Ratio between the loose bounds of a cell and its size.
+	 */
+	public static final double LOOSENESS = 2;
+
+	/**
+	 * Maximum depth of a cell, the root being at depth 0.
+	 */
+	public static final int MAX_DEPTH = 20;
+
+	/**
+	 * The root cell.
+	 */
+	public static final int ROOT = 0;
+
+	protected boolean is3D;
+
+	/**
+	 * Number of children of a cell, 4 or 8.
+	 */
+	protected int divisions;
+
+	/**
+	 * Number of boids in a leaf above which the leaf is split.
+	 */
+	protected int maxPerLeaf;
+
+	//
+	// Cells.
+	//
+
+	/**
+	 * First child of each cell, -1 for leaves. In the free list, next free
+	 * block.
+	 */
+	protected int[] child = new int[0];
+
+	protected int[] parent = new int[0];
+
+	protected int[] depth = new int[0];
+
+	/**
+	 * Number of boids in the cell and its descendants.
+	 */
+	protected int[] population = new int[0];
+
+	/**
+	 * First boid stored in the cell itself, -1 if none.
+	 */
+	protected int[] head = new int[0];
+
+	/**
+	 * Center and half side of the cells.
+	 */
+	protected double[] cx = new double[0], cy = new double[0],
+			cz = new double[0], half = new double[0];
+
+	/**
+	 * Barycenter and average direction of the cells.
+	 */
+	protected double[] bx = new double[0], by = new double[0],
+			bz = new double[0], dx = new double[0], dy = new double[0],
+			dz = new double[0];
+
+	/**
+	 * Number of cells ever used.
+	 */
+	protected int cellTop;
+
+	/**
+	 * First free block of cells, -1 if none.
+	 */
+	protected int freeBlock;
+
+	//
+	// Boids.
+	//
+
+	protected Boid[] boids = new Boid[0];
+
+	/**
+	 * Position of the boids, as last given.
+	 */
+	protected double[] x = new double[0], y = new double[0],
+			z = new double[0];
+
+	/**
+	 * Cell of each boid, -1 if the slot is free.
+	 */
+	protected int[] cellOf = new int[0];
+
+	/**
+	 * Neighbors of each boid in the list of its cell. In the free list, next
+	 * free slot.
+	 */
+	protected int[] next = new int[0], prev = new int[0];
+
+	/**
+	 * Number of boid slots ever used.
+	 */
+	protected int boidTop;
+
+	/**
+	 * First free boid slot, -1 if none.
+	 */
+	protected int freeBoid;
+
+	/**
+	 * Stack of cells used by searches and by {@link #updateAggregates()}.
+	 */
+	protected int[] stack = new int[64];
+
+	/**
+	 * Distance and visitor of the current {@link #pairs(double, PairVisitor)}
+	 * traversal.
+	 */
+	protected double pairRadius, pairRadius2;
+
+	protected PairVisitor pairVisitor;
+
+	/**
+	 * Receives the pairs of boids found by
+	 * {@link LooseNTree#pairs(double, PairVisitor)}.
+	 */
+	public static interface PairVisitor {
+		/**
+		 * Two boids are close enough.
+		 * 
+		 * @param a
+		 *            One boid.
+		 * @param b
+		 *            The other boid.
+		 * @param d2
+		 *            The square of their distance.
+		 */
+		void pair(Boid a, Boid b, double d2);
+	}
+
+	public LooseNTree(boolean is3D, int maxPerLeaf) {
+		this.is3D = is3D;
+		this.divisions = is3D ? 8 : 4;
+		this.maxPerLeaf = maxPerLeaf;
+	}
+
+	/**
+	 * Remove all boids and set the bounds of the root.
+	 * 
+	 * @param lo
+	 *            Lowest point of the space.
+	 * @param hi
+	 *            Highest point of the space.
+	 */
+	public void reset(Point3 lo, Point3 hi) {
+		double h = Math.max(hi.x - lo.x, hi.y - lo.y);
+
+		if (is3D)
+			h = Math.max(h, hi.z - lo.z);
+
+		Arrays.fill(boids, null);
+
+		cellTop = 0;
+		freeBlock = -1;
+		boidTop = 0;
+		freeBoid = -1;
+
+		int root = newCells(1);
+
+		initCell(root, -1, 0, (lo.x + hi.x) / 2, (lo.y + hi.y) / 2,
+				is3D ? (lo.z + hi.z) / 2 : 0, h / 2);
+	}
+
+	/**
+	 * Add a boid.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @param p
+	 *            Its position.
+	 * @return The slot of the boid, to give to {@link #move(int, Point3)} and
+	 *         {@link #remove(int)}.
+	 */
+	public int insert(Boid b, Point3 p) {
+		int i = freeBoid;
+
+		if (i >= 0) {
+			freeBoid = next[i];
+		} else {
+			if (boidTop == boids.length)
+				growBoids();
+
+			i = boidTop++;
+		}
+
+		boids[i] = b;
+		x[i] = p.x;
+		y[i] = p.y;
+		z[i] = is3D ? p.z : 0;
+
+		place(i, ROOT);
+
+		return i;
+	}
+
+	/**
+	 * Remove a boid.
+	 * 
+	 * @param i
+	 *            The slot of the boid.
+	 */
+	public void remove(int i) {
+		int c = cellOf[i];
+
+		unlink(i);
+
+		for (int a = c; a >= 0; a = parent[a])
+			population[a]--;
+
+		boids[i] = null;
+		cellOf[i] = -1;
+		next[i] = freeBoid;
+		freeBoid = i;
+
+		for (int a = parent[c]; a >= 0; a = parent[a]) {
+			if (population[a] <= maxPerLeaf / 2)
+				merge(a);
+		}
+	}
+
+	/**
+	 * Tell the tree a boid moved. The boid changes of cell only if it left
+	 * the loose bounds of its cell.
+	 * 
+	 * @param i
+	 *            The slot of the boid.
+	 * @param p
+	 *            The new position.
+	 */
+	public void move(int i, Point3 p) {
+		int c = cellOf[i];
+
+		x[i] = p.x;
+		y[i] = p.y;
+		z[i] = is3D ? p.z : 0;
+
+		int a;
+
+		if (c == ROOT) {
+			//
+			// Boids stay in the root only when they are out of the space or
+			// when the root is a leaf.
+			//
+
+			if (child[c] < 0 || !contains(c, x[i], y[i], z[i]))
+				return;
+
+			a = ROOT;
+		} else {
+			if (isInLooseBounds(c, x[i], y[i], z[i]))
+				return;
+
+			//
+			// Go up to the first ancestor that contains the boid, and put it
+			// down from there.
+			//
+
+			a = parent[c];
+
+			while (a != ROOT && !contains(a, x[i], y[i], z[i]))
+				a = parent[a];
+		}
+
+		unlink(i);
+
+		for (int u = c; u != a; u = parent[u])
+			population[u]--;
+
+		population[a]--;
+		place(i, a);
+
+		for (int u = parent[c]; u >= 0 && u != a; u = parent[u]) {
+			if (child[u] >= 0 && population[u] <= maxPerLeaf / 2)
+				merge(u);
+		}
+	}
+
+	/**
+	 * Compute the barycenter and average direction of all the cells.
+	 */
+	public void updateAggregates() {
+		//
+		// Cells are listed parents first in the stack, then processed from
+		// the end, so that children are always done before their parent.
+		//
+
+		int n = 0;
+
+		push(n++, ROOT);
+
+		for (int k = 0; k < n; k++) {
+			int c = stack[k];
+
+			if (child[c] >= 0) {
+				for (int j = 0; j < divisions; j++)
+					push(n++, child[c] + j);
+			}
+		}
+
+		for (int k = n - 1; k >= 0; k--) {
+			int c = stack[k];
+			double sx = 0, sy = 0, sz = 0, tx = 0, ty = 0, tz = 0;
+
+			for (int i = head[c]; i >= 0; i = next[i]) {
+				Vector3 d = boids[i].getForces().getDirection();
+
+				sx += x[i];
+				sy += y[i];
+				sz += z[i];
+				tx += d.data[0];
+				ty += d.data[1];
+				tz += d.data[2];
+			}
+
+			if (child[c] >= 0) {
+				for (int j = 0; j < divisions; j++) {
+					int s = child[c] + j;
+					int pop = population[s];
+
+					sx += bx[s] * pop;
+					sy += by[s] * pop;
+					sz += bz[s] * pop;
+					tx += dx[s] * pop;
+					ty += dy[s] * pop;
+					tz += dz[s] * pop;
+				}
+			}
+
+			int pop = population[c];
+
+			if (pop > 0) {
+				bx[c] = sx / pop;
+				by[c] = sy / pop;
+				bz[c] = sz / pop;
+				dx[c] = tx / pop;
+				dy[c] = ty / pop;
+				dz[c] = tz / pop;
+			} else {
+				bx[c] = by[c] = bz[c] = 0;
+				dx[c] = dy[c] = dz[c] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Add the boids at most at a given distance of a point and visible from a
+	 * source boid to a list. The source itself is not added.
+	 * 
+	 * @param source
+	 *            The boid looking around.
+	 * @param p
+	 *            Its position.
+	 * @param radius
+	 *            Its view zone.
+	 * @param contacts
+	 *            Where to add the visible boids.
+	 */
+	public void search(Boid source, Point3 p, double radius,
+			List<Boid> contacts) {
+		BoidForces forces = source.getForces();
+		double qx = p.x, qy = p.y, qz = is3D ? p.z : 0;
+		double r2 = radius * radius;
+		int n = 0;
+
+		push(n++, ROOT);
+
+		while (n > 0) {
+			int c = stack[--n];
+
+			if (population[c] == 0)
+				continue;
+
+			if (c != ROOT) {
+				double lh = half[c] * LOOSENESS + radius;
+
+				if (Math.abs(qx - cx[c]) > lh || Math.abs(qy - cy[c]) > lh
+						|| (is3D && Math.abs(qz - cz[c]) > lh))
+					continue;
+			}
+
+			for (int i = head[c]; i >= 0; i = next[i]) {
+				double ux = x[i] - qx, uy = y[i] - qy, uz = z[i] - qz;
+
+				if (ux * ux + uy * uy + uz * uz <= r2 && boids[i] != source
+						&& forces.isVisible(source, boids[i]))
+					contacts.add(boids[i]);
+			}
+
+			if (child[c] >= 0) {
+				for (int j = 0; j < divisions; j++)
+					push(n++, child[c] + j);
+			}
+		}
+	}
+
+	/**
+	 * Offer the boids at most at a given distance of a point and visible from
+	 * a source boid to a collector. Cells farther than the radius of the
+	 * collector are not explored, nor are cells farther than the distance.
+	 * 
+	 * @param source
+	 *            The boid looking around.
+	 * @param p
+	 *            Its position.
+	 * @param radius
+	 *            Its view zone.
+	 * @param collector
+	 *            Receives the visible boids.
+	 */
+	public void collect(Boid source, Point3 p, double radius,
+			BoidCollector collector) {
+		BoidForces forces = source.getForces();
+		double qx = p.x, qy = p.y, qz = is3D ? p.z : 0;
+		double r2 = radius * radius;
+		int n = 0;
+
+		push(n++, ROOT);
+
+		while (n > 0) {
+			int c = stack[--n];
+			double bound = Math.min(r2, collector.getRadius2());
+
+			if (population[c] == 0)
+				continue;
+
+			if (c != ROOT) {
+				double lh = half[c] * LOOSENESS;
+				double gx = Math.max(0, Math.abs(qx - cx[c]) - lh);
+				double gy = Math.max(0, Math.abs(qy - cy[c]) - lh);
+				double gz = is3D ? Math.max(0, Math.abs(qz - cz[c]) - lh) : 0;
+
+				if (gx * gx + gy * gy + gz * gz > bound)
+					continue;
+			}
+
+			for (int i = head[c]; i >= 0; i = next[i]) {
+				double ux = x[i] - qx, uy = y[i] - qy, uz = z[i] - qz;
+				double d2 = ux * ux + uy * uy + uz * uz;
+
+				if (d2 <= r2 && d2 < collector.getRadius2() && boids[i] != source
+						&& forces.isVisible(source, boids[i]))
+					collector.offer(boids[i], d2);
+			}
+
+			//
+			// Children are pushed farthest first, so that the nearest one is
+			// explored first.
+			//
+
+			if (child[c] >= 0) {
+				int first = child[c];
+				int near = side(c, qx, qy, qz);
+
+				for (int j = divisions - 1; j >= 0; j--)
+					push(n++, first + (j ^ near));
+			}
+		}
+	}
+
+	/**
+	 * Find all the pairs of boids at most at a given distance from each
+	 * other, each pair being given once to the visitor.
+	 * 
+	 * <p>
+	 * Rather than searching the tree from the root for each boid, the tree is
+	 * traversed against itself: two cells too far apart are pruned at once
+	 * for all the boids they contain, and boids are only compared when their
+	 * cells are close. This finds the neighbors of all the boids with far
+	 * less cell tests than one search per boid.
+	 * </p>
+	 * 
+	 * @param radius
+	 *            The distance.
+	 * @param visitor
+	 *            Receives the pairs.
+	 */
+	public void pairs(double radius, PairVisitor visitor) {
+		pairRadius = radius;
+		pairRadius2 = radius * radius;
+		pairVisitor = visitor;
+
+		dual(ROOT, ROOT);
+
+		pairVisitor = null;
+	}
+
+	/**
+	 * Pairs with one boid under a cell and the other under another cell, or
+	 * pairs under a cell if both are the same.
+	 */
+	protected void dual(int a, int b) {
+		if (population[a] == 0 || population[b] == 0)
+			return;
+
+		if (a == b) {
+			for (int i = head[a]; i >= 0; i = next[i]) {
+				for (int j = next[i]; j >= 0; j = next[j])
+					pair(i, j);
+			}
+
+			if (child[a] >= 0) {
+				int first = child[a];
+
+				for (int k = 0; k < divisions; k++) {
+					if (head[a] >= 0)
+						cross(a, first + k);
+
+					for (int l = k; l < divisions; l++)
+						dual(first + k, first + l);
+				}
+			}
+
+			return;
+		}
+
+		if (gap2(a, b) > pairRadius2)
+			return;
+
+		//
+		// Split the largest cell, pairing its own boids with all the boids of
+		// the other cell.
+		//
+
+		if (child[a] >= 0 && (child[b] < 0 || half[a] >= half[b])) {
+			if (head[a] >= 0)
+				cross(a, b);
+
+			for (int k = 0; k < divisions; k++)
+				dual(child[a] + k, b);
+		} else if (child[b] >= 0) {
+			if (head[b] >= 0)
+				cross(b, a);
+
+			for (int k = 0; k < divisions; k++)
+				dual(a, child[b] + k);
+		} else {
+			for (int i = head[a]; i >= 0; i = next[i]) {
+				for (int j = head[b]; j >= 0; j = next[j])
+					pair(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Pairs with one boid stored in a cell and the other under another cell.
+	 */
+	protected void cross(int a, int b) {
+		if (population[b] == 0 || gap2(a, b) > pairRadius2)
+			return;
+
+		for (int i = head[a]; i >= 0; i = next[i]) {
+			for (int j = head[b]; j >= 0; j = next[j])
+				pair(i, j);
+		}
+
+		if (child[b] >= 0) {
+			for (int k = 0; k < divisions; k++)
+				cross(a, child[b] + k);
+		}
+	}
+
+	protected void pair(int i, int j) {
+		double ux = x[i] - x[j], uy = y[i] - y[j], uz = z[i] - z[j];
+		double d2 = ux * ux + uy * uy + uz * uz;
+
+		if (d2 <= pairRadius2)
+			pairVisitor.pair(boids[i], boids[j], d2);
+	}
+
+	/**
+	 * Square of the distance between the loose bounds of two cells. The root
+	 * may hold boids out of its bounds, so it is never away from anything.
+	 */
+	protected double gap2(int a, int b) {
+		if (a == ROOT || b == ROOT)
+			return 0;
+
+		double h = (half[a] + half[b]) * LOOSENESS;
+		double gx = Math.max(0, Math.abs(cx[a] - cx[b]) - h);
+		double gy = Math.max(0, Math.abs(cy[a] - cy[b]) - h);
+		double gz = is3D ? Math.max(0, Math.abs(cz[a] - cz[b]) - h) : 0;
+
+		return gx * gx + gy * gy + gz * gz;
+	}
+
+	//
+	// Access to the cells.
+	//
+
+	public boolean isLeaf(int c) {
+		return child[c] < 0;
+	}
+
+	/**
+	 * A child of a cell.
+	 * 
+	 * @param c
+	 *            The cell, not a leaf.
+	 * @param j
+	 *            Index of the child, less than 4 or 8.
+	 * @return The child cell.
+	 */
+	public int getChild(int c, int j) {
+		return child[c] + j;
+	}
+
+	public int getPopulation(int c) {
+		return population[c];
+	}
+
+	public int getDepth(int c) {
+		return depth[c];
+	}
+
+	public void getBarycenter(int c, Point3 result) {
+		result.set(bx[c], by[c], bz[c]);
+	}
+
+	public void getDirection(int c, Vector3 result) {
+		result.set(dx[c], dy[c], dz[c]);
+	}
+
+	//
+	// Internals.
+	//
+
+	protected void push(int k, int c) {
+		if (k == stack.length)
+			stack = Arrays.copyOf(stack, stack.length * 2);
+
+		stack[k] = c;
+	}
+
+	protected boolean contains(int c, double px, double py, double pz) {
+		double h = half[c];
+
+		return Math.abs(px - cx[c]) <= h && Math.abs(py - cy[c]) <= h
+				&& (!is3D || Math.abs(pz - cz[c]) <= h);
+	}
+
+	protected boolean isInLooseBounds(int c, double px, double py, double pz) {
+		double h = half[c] * LOOSENESS;
+
+		return Math.abs(px - cx[c]) <= h && Math.abs(py - cy[c]) <= h
+				&& (!is3D || Math.abs(pz - cz[c]) <= h);
+	}
+
+	/**
+	 * Index of the child of a cell on the side of a point.
+	 */
+	protected int side(int c, double px, double py, double pz) {
+		int j = 0;
+
+		if (px >= cx[c])
+			j |= 1;
+		if (py >= cy[c])
+			j |= 2;
+		if (is3D && pz >= cz[c])
+			j |= 4;
+
+		return j;
+	}
+
+	/**
+	 * Put a boid in the deepest cell containing it under a cell, splitting
+	 * the leaf if needed.
+	 */
+	protected void place(int i, int c) {
+		population[c]++;
+
+		while (child[c] >= 0) {
+			int s = child[c] + side(c, x[i], y[i], z[i]);
+
+			if (!contains(s, x[i], y[i], z[i]))
+				break;
+
+			c = s;
+			population[c]++;
+		}
+
+		link(i, c);
+
+		if (child[c] < 0 && population[c] > maxPerLeaf
+				&& depth[c] < MAX_DEPTH)
+			split(c);
+	}
+
+	protected void link(int i, int c) {
+		cellOf[i] = c;
+		prev[i] = -1;
+		next[i] = head[c];
+
+		if (head[c] >= 0)
+			prev[head[c]] = i;
+
+		head[c] = i;
+	}
+
+	protected void unlink(int i) {
+		int c = cellOf[i];
+
+		if (prev[i] >= 0)
+			next[prev[i]] = next[i];
+		else
+			head[c] = next[i];
+
+		if (next[i] >= 0)
+			prev[next[i]] = prev[i];
+	}
+
+	protected void split(int c) {
+		int first = newCells(divisions);
+		double h = half[c] / 2;
+
+		for (int j = 0; j < divisions; j++) {
+			initCell(first + j, c, depth[c] + 1, cx[c]
+					+ ((j & 1) != 0 ? h : -h), cy[c] + ((j & 2) != 0 ? h : -h),
+					is3D ? cz[c] + ((j & 4) != 0 ? h : -h) : 0, h);
+		}
+
+		child[c] = first;
+
+		int i = head[c];
+
+		head[c] = -1;
+
+		while (i >= 0) {
+			int n = next[i];
+			int s = first + side(c, x[i], y[i], z[i]);
+
+			if (contains(s, x[i], y[i], z[i])) {
+				link(i, s);
+				population[s]++;
+			} else {
+				link(i, c);
+			}
+
+			i = n;
+		}
+
+		for (int j = 0; j < divisions; j++) {
+			if (population[first + j] > maxPerLeaf
+					&& depth[first + j] < MAX_DEPTH)
+				split(first + j);
+		}
+	}
+
+	/**
+	 * Bring all the boids under a cell back in it, and free its descendants.
+	 */
+	protected void merge(int c) {
+		if (child[c] < 0)
+			return;
+
+		int first = child[c];
+
+		for (int j = 0; j < divisions; j++) {
+			int s = first + j;
+
+			merge(s);
+
+			int i = head[s];
+
+			while (i >= 0) {
+				int n = next[i];
+
+				link(i, c);
+				i = n;
+			}
+		}
+
+		child[c] = -1;
+		child[first] = freeBlock;
+		freeBlock = first;
+	}
+
+	protected int newCells(int n) {
+		if (n == divisions && freeBlock >= 0) {
+			int first = freeBlock;
+			freeBlock = child[first];
+			return first;
+		}
+
+		if (cellTop + n > child.length)
+			growCells(cellTop + n);
+
+		int first = cellTop;
+		cellTop += n;
+
+		return first;
+	}
+
+	protected void initCell(int c, int p, int d, double x, double y, double z,
+			double h) {
+		child[c] = -1;
+		parent[c] = p;
+		depth[c] = d;
+		population[c] = 0;
+		head[c] = -1;
+		cx[c] = x;
+		cy[c] = y;
+		cz[c] = z;
+		half[c] = h;
+	}
+
+	protected void growCells(int min) {
+		int n = Math.max(min, Math.max(64, child.length * 2));
+
+		child = Arrays.copyOf(child, n);
+		parent = Arrays.copyOf(parent, n);
+		depth = Arrays.copyOf(depth, n);
+		population = Arrays.copyOf(population, n);
+		head = Arrays.copyOf(head, n);
+		cx = Arrays.copyOf(cx, n);
+		cy = Arrays.copyOf(cy, n);
+		cz = Arrays.copyOf(cz, n);
+		half = Arrays.copyOf(half, n);
+		bx = Arrays.copyOf(bx, n);
+		by = Arrays.copyOf(by, n);
+		bz = Arrays.copyOf(bz, n);
+		dx = Arrays.copyOf(dx, n);
+		dy = Arrays.copyOf(dy, n);
+		dz = Arrays.copyOf(dz, n);
+	}
+
+	protected void growBoids() {
+		int n = Math.max(64, boids.length * 2);
+
+		boids = Arrays.copyOf(boids, n);
+		x = Arrays.copyOf(x, n);
+		y = Arrays.copyOf(y, n);
+		z = Arrays.copyOf(z, n);
+		cellOf = Arrays.copyOf(cellOf, n);
+		next = Arrays.copyOf(next, n);
+		prev = Arrays.copyOf(prev, n);
+	}
+}
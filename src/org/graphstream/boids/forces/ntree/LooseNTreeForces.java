@@ -0,0 +1,185 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.ntree;
+
+import java.util.Collection;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidCollector;
+import org.graphstream.boids.forces.IndexedForces;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Forces of a boid stored in a {@link LooseNTree}.
+ * 
+ * @author Antoine Dutot
+ */
+public class LooseNTreeForces extends IndexedForces {
+	/**
+	 * Slot of the boid in the tree, -1 if not in the tree.
+	 */
+	int slot = -1;
+
+	/**
+	 * True if the neighborhood was already gathered for the next computation.
+	 */
+	boolean gathered;
+
+	/**
+	 * True if the neighbors of the boid are integrated by pairs, see
+	 * {@link LooseNTreeForcesFactory#setSymmetric(boolean)}.
+	 */
+	boolean paired;
+
+	public LooseNTreeForces(Boid b, LooseNTreeForcesFactory factory) {
+		super(b, factory);
+	}
+
+	/**
+	 * Start gathering the neighborhood from outside, see
+	 * {@link LooseNTreeForcesFactory#setDualTree(boolean)}.
+	 */
+	void beginGathering() {
+		contacts.clear();
+		gathered = true;
+	}
+
+	void gather(Boid b) {
+		contacts.add(b);
+	}
+
+	/**
+	 * Start a computation where neighbors are given by pairs, see
+	 * {@link LooseNTreeForcesFactory#setSymmetric(boolean)}.
+	 */
+	void beginPairs() {
+		contacts.clear();
+		beginCompute();
+	}
+
+	/**
+	 * Integrate a pair of boids at once, the offset and distance between them
+	 * being computed once for both.
+	 * 
+	 * @param other
+	 *            The forces of the other boid.
+	 * @param sees
+	 *            True if this boid sees the other.
+	 * @param seen
+	 *            True if the other boid sees this one.
+	 * @param d2
+	 *            The square of the distance between the boids.
+	 * @param rep
+	 *            A vector to work with.
+	 */
+	void pair(LooseNTreeForces other, boolean sees, boolean seen, double d2,
+			Vector3 rep) {
+		Point3 p1 = position;
+		Point3 p2 = other.position;
+		double len = Math.sqrt(d2);
+
+		if (sees) {
+			rep.set(p1.x - p2.x, p1.y - p2.y, p1.z - p2.z);
+			interact(other.boid, rep, len);
+			contacts.add(other.boid);
+		}
+
+		if (seen) {
+			rep.set(p2.x - p1.x, p2.y - p1.y, p2.z - p1.z);
+			other.interact(boid, rep, len);
+			other.contacts.add(boid);
+		}
+	}
+
+	/**
+	 * End a computation started by {@link #beginPairs()}.
+	 */
+	void endPairs() {
+		endCompute(contacts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForces#getNeighborhood()
+	 */
+	@Override
+	public Collection<Boid> getNeighborhood() {
+		if (gathered) {
+			gathered = false;
+			return contacts;
+		}
+
+		return super.getNeighborhood();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForces#collect(org.graphstream.boids
+	 * .BoidCollector)
+	 */
+	@Override
+	protected Collection<Boid> collect(BoidCollector collector) {
+		if (!gathered)
+			return super.collect(collector);
+
+		Point3 p = position;
+
+		gathered = false;
+
+		for (int i = 0; i < contacts.size(); i++) {
+			Point3 q = contacts.get(i).getPosition();
+			double dx = q.x - p.x, dy = q.y - p.y, dz = q.z - p.z;
+
+			collector.offer(contacts.get(i), dx * dx + dy * dy + dz * dz);
+		}
+
+		contacts.clear();
+		collector.addTo(contacts);
+
+		return contacts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForces#setPosition(double,
+	 * double, double)
+	 */
+	@Override
+	public void setPosition(double x, double y, double z) {
+		super.setPosition(x, y, z);
+
+		if (slot >= 0)
+			((LooseNTreeForcesFactory) factory).tree.move(slot, position);
+	}
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.ntree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidCollector;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.SpeciesParameters;
+import org.graphstream.boids.forces.IndexedForcesFactory;
+import org.graphstream.boids.forces.Morton;
+import org.graphstream.stream.ElementSink;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * A forces system using the {@link LooseNTree} of this package instead of the
+ * pherd n-tree.
+ * 
+ * <p>
+ * The tree is kept from one step to the next. After the boids moved, only
+ * those that left the loose bounds of their cell change of cell, and the
+ * barycenters and directions of the cells are updated in one pass.
+ * </p>
+ * 
+ * <p>
+ * In {@link #setDualTree(boolean) dual tree} mode, the neighborhoods of all
+ * the boids are gathered before the forces are computed, by traversing the
+ * tree against itself instead of searching it once per boid. In
+ * {@link #setSymmetric(boolean) symmetric} mode, each pair found this way is
+ * also integrated at once in the forces of both boids.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class LooseNTreeForcesFactory extends IndexedForcesFactory implements
+		ElementSink {
+	protected LooseNTree tree;
+
+	protected boolean dualTree;
+
+	protected boolean symmetric;
+
+	/**
+	 * Work vector for {@link #evaluate(Boid, Boid, double)}.
+	 */
+	protected Vector3 offset = new Vector3();
+
+	/**
+	 * Gives each boid of a pair to the other if it can see it.
+	 */
+	protected LooseNTree.PairVisitor gatherer = new LooseNTree.PairVisitor() {
+		public void pair(Boid a, Boid b, double d2) {
+			gather(a, b, d2);
+			gather(b, a, d2);
+		}
+	};
+
+	/**
+	 * Integrates each pair in the forces of both boids.
+	 */
+	protected LooseNTree.PairVisitor evaluator = new LooseNTree.PairVisitor() {
+		public void pair(Boid a, Boid b, double d2) {
+			evaluate(a, b, d2);
+		}
+	};
+
+	public LooseNTreeForcesFactory(BoidGraph ctx) {
+		this(ctx, false);
+	}
+
+	public LooseNTreeForcesFactory(BoidGraph ctx, boolean is3D) {
+		super(ctx, is3D);
+
+		tree = new LooseNTree(is3D, NTreeForcesFactory.MAX_PARTICLES_PER_CELL);
+		tree.reset(ctx.getLowAnchor(), ctx.getHighAnchor());
+	}
+
+	public LooseNTree getTree() {
+		return tree;
+	}
+
+	public boolean isDualTree() {
+		return dualTree;
+	}
+
+	/**
+	 * Gather the neighborhoods of all the boids in one traversal of the tree
+	 * against itself, rather than with one search per boid. Visibility is
+	 * then tested with the directions of the boids at the start of the step
+	 * for all of them.
+	 * 
+	 * @param on
+	 *            True to enable.
+	 */
+	public void setDualTree(boolean on) {
+		dualTree = on;
+	}
+
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+
+	/**
+	 * Integrate each pair of boids once for both boids, instead of once from
+	 * each side. The pairs are found by traversing the tree against itself,
+	 * as in {@link #setDualTree(boolean) dual tree} mode, whatever this mode.
+	 * Each boid still applies its own view zone, angle of view and
+	 * interaction coefficients to the other.
+	 * 
+	 * @param on
+	 *            True to enable.
+	 */
+	public void setSymmetric(boolean on) {
+		symmetric = on;
+	}
+
+	protected void evaluate(Boid a, Boid b, double d2) {
+		SpeciesParameters pa = a.getSpecies().getParameters();
+		SpeciesParameters pb = b.getSpecies().getParameters();
+		LooseNTreeForces fa = (LooseNTreeForces) a.getForces();
+		LooseNTreeForces fb = (LooseNTreeForces) b.getForces();
+		boolean sees = fa.paired && d2 <= pa.viewZone * pa.viewZone
+				&& fa.isVisible(a, b);
+		boolean seen;
+
+		//
+		// Without angle of view, boids of a species see each other or not.
+		//
+
+		if (a.getSpecies() == b.getSpecies() && pa.angleOfView <= -1)
+			seen = sees;
+		else
+			seen = fb.paired && d2 <= pb.viewZone * pb.viewZone
+					&& fb.isVisible(b, a);
+
+		if (sees || seen)
+			fa.pair(fb, sees, seen, d2, offset);
+	}
+
+	protected void gather(Boid a, Boid b, double d2) {
+		double vz = a.getSpecies().getParameters().viewZone;
+		BoidForces f = a.getForces();
+
+		if (d2 <= vz * vz && f.isVisible(a, b))
+			((LooseNTreeForces) f).gather(b);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#init()
+	 */
+	@Override
+	public void init() {
+		build();
+		ctx.addElementSink(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#end()
+	 */
+	@Override
+	public void end() {
+		ctx.removeElementSink(this);
+		clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#createNewForces(org
+	 * .graphstream.boids.Boid)
+	 */
+	@Override
+	public BoidForces createNewForces(Boid b) {
+		return new LooseNTreeForces(b, this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#recycleForces(org.
+	 * graphstream.boids.Boid, org.graphstream.boids.BoidForces)
+	 */
+	@Override
+	public BoidForces recycleForces(Boid b, BoidForces forces) {
+		if (!(forces instanceof LooseNTreeForces))
+			return createNewForces(b);
+
+		return super.recycleForces(b, forces);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#boidsAdded(java.util
+	 * .Collection)
+	 */
+	@Override
+	public void boidsAdded(Collection<Boid> boids) {
+		if (boids.size() > 1)
+			boids = Morton.sort(boids, ctx.getLowAnchor(),
+					ctx.getHighAnchor(), is3D);
+
+		for (Boid b : boids)
+			insert(b);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#boidsRemoved(java.
+	 * util.Collection)
+	 */
+	@Override
+	public void boidsRemoved(Collection<Boid> boids) {
+		for (Boid b : boids)
+			remove(b);
+	}
+
+	protected void insert(Boid b) {
+		LooseNTreeForces f = (LooseNTreeForces) b.getForces();
+
+		if (f.slot < 0)
+			f.slot = tree.insert(b, f.getPosition());
+	}
+
+	protected void remove(Boid b) {
+		LooseNTreeForces f = (LooseNTreeForces) b.getForces();
+
+		if (f.slot >= 0) {
+			tree.remove(f.slot);
+			f.slot = -1;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#step()
+	 */
+	@Override
+	public void step() {
+		if (symmetric) {
+			double max = 0;
+
+			//
+			// Boids that do not integrate all the visible boids cannot be
+			// given their neighbors by pairs, they search them afterward.
+			//
+
+			for (Boid b : ctx.<Boid> getEachNode()) {
+				LooseNTreeForces f = (LooseNTreeForces) b.getForces();
+				SpeciesParameters params = b.getSpecies().getParameters();
+
+				f.paired = params.integratesAllVisible();
+
+				if (f.paired)
+					f.beginPairs();
+
+				max = Math.max(max, params.viewZone);
+			}
+
+			tree.pairs(max, evaluator);
+
+			for (Boid b : ctx.<Boid> getEachNode()) {
+				LooseNTreeForces f = (LooseNTreeForces) b.getForces();
+
+				if (f.paired)
+					f.endPairs();
+				else
+					f.compute();
+			}
+		} else if (dualTree) {
+			double max = 0;
+
+			for (Boid b : ctx.<Boid> getEachNode()) {
+				((LooseNTreeForces) b.getForces()).beginGathering();
+				max = Math.max(max, b.getSpecies().getParameters().viewZone);
+			}
+
+			tree.pairs(max, gatherer);
+
+			for (Boid b : ctx.<Boid> getEachNode())
+				b.getForces().compute();
+		} else {
+			for (Boid b : ctx.<Boid> getEachNode())
+				b.getForces().compute();
+		}
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			LooseNTreeForces f = (LooseNTreeForces) b.getForces();
+
+			f.getPosition().copy(f.getNextPosition());
+
+			if (f.slot >= 0)
+				tree.move(f.slot, f.getPosition());
+		}
+
+		tree.updateAggregates();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#resize(org.miv.pherd
+	 * .geom.Point3, org.miv.pherd.geom.Point3)
+	 */
+	@Override
+	public void resize(Point3 low, Point3 high) {
+		build();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#build()
+	 */
+	protected void build() {
+		ArrayList<Boid> boids = new ArrayList<Boid>(ctx.getNodeCount());
+
+		clear();
+
+		for (Boid b : ctx.<Boid> getEachNode())
+			boids.add(b);
+
+		boidsAdded(boids);
+		tree.updateAggregates();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.IndexedForcesFactory#clear()
+	 */
+	protected void clear() {
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			if (b.getForces() instanceof LooseNTreeForces)
+				((LooseNTreeForces) b.getForces()).slot = -1;
+		}
+
+		tree.reset(ctx.getLowAnchor(), ctx.getHighAnchor());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#getNeighborhood(org
+	 * .graphstream.boids.Boid, java.util.List)
+	 */
+	protected void getNeighborhood(Boid b, List<Boid> contacts) {
+		double radius = b.getSpecies().getParameters().viewZone;
+
+		if (radius > 0)
+			tree.search(b, b.getPosition(), radius, contacts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.IndexedForcesFactory#collectNeighborhood
+	 * (org.graphstream.boids.Boid, org.graphstream.boids.BoidCollector)
+	 */
+	@Override
+	protected void collectNeighborhood(Boid b, BoidCollector collector) {
+		double radius = b.getSpecies().getParameters().viewZone;
+
+		if (radius > 0)
+			tree.collect(b, b.getPosition(), radius, collector);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#nodeAdded(java.lang.String, long,
+	 * java.lang.String)
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		if (ctx.isBatching())
+			return;
+
+		insert(ctx.getBoid(nodeId));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#nodeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		if (ctx.isBatching())
+			return;
+
+		remove(ctx.getBoid(nodeId));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#graphCleared(java.lang.String,
+	 * long)
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		tree.reset(ctx.getLowAnchor(), ctx.getHighAnchor());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#edgeAdded(java.lang.String, long,
+	 * java.lang.String, java.lang.String, java.lang.String, boolean)
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#edgeRemoved(java.lang.String,
+	 * long, java.lang.String)
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.stream.ElementSink#stepBegins(java.lang.String,
+	 * long, double)
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+	}
+}
@@ -29,8 +29,8 @@
 package org.graphstream.boids.forces.ntree;
 
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.graphstream.boids.Boid;
@@ -55,6 +55,11 @@ import org.miv.pherd.ntree.Cell;
 public class NTreeForces extends BoidForces {
 	BoidParticle p;
 
+	/**
+	 * The factory that created these forces, it knows which trees to explore.
+	 */
+	NTreeForcesFactory factory;
+
 	public NTreeForces(BoidParticle p) {
 		super(p.b);
 		this.p = p;
@@ -128,7 +133,8 @@ public class NTreeForces extends BoidForces {
 			Particle particle = particles.next();
 
 			if (particle instanceof BoidParticle) {
-				if (p != particle && isVisible(boid, particle.getPosition()))
+				if (p != particle
+						&& isVisible(boid, ((BoidParticle) particle).b))
 					contacts.add(((BoidParticle) particle).b);
 			}
 		}
@@ -146,7 +152,7 @@ public class NTreeForces extends BoidForces {
 	 * @return True if there is an intersection.
 	 */
 	protected boolean intersection(Boid source, Cell cell) {
-		double vz = source.getSpecies().getViewZone();
+		double vz = source.getSpecies().getParameters().viewZone;
 
 		double x1 = cell.getSpace().getLoAnchor().x;
 		double y1 = cell.getSpace().getLoAnchor().y;
@@ -188,10 +194,15 @@ public class NTreeForces extends BoidForces {
 	 */
 	@Override
 	public Collection<Boid> getNeighborhood() {
-		HashSet<Boid> neigh = new HashSet<Boid>();
-		Cell startCell = p.getCell().getTree().getRootCell();
-
-		exploreTree(startCell, neigh);
+		LinkedHashSet<Boid> neigh = new LinkedHashSet<Boid>();
+		Cell[] roots = factory == null ? null : factory.getQueryRoots(boid);
+
+		if (roots == null)
+			exploreTree(p.getCell().getTree().getRootCell(), neigh);
+		else {
+			for (int i = 0; i < roots.length; i++)
+				exploreTree(roots[i], neigh);
+		}
 
 		return neigh;
 	}
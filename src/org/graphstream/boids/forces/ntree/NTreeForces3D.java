@@ -61,7 +61,7 @@ public class NTreeForces3D extends NTreeForces {
 	 * @return True if there is an intersection.
 	 */
 	protected boolean intersection(Boid source, Cell cell) {
-		double vz = source.getSpecies().getViewZone();
+		double vz = source.getSpecies().getParameters().viewZone;
 
 		double x1 = cell.getSpace().getLoAnchor().x;
 		double y1 = cell.getSpace().getLoAnchor().y;
@@ -28,15 +28,19 @@
  */
 package org.graphstream.boids.forces.ntree;
 
+import java.util.ArrayList;
+import java.util.Collection;
+
 import org.graphstream.boids.Boid;
 import org.graphstream.boids.BoidForces;
 import org.graphstream.boids.BoidGraph;
 import org.graphstream.boids.BoidForcesFactory;
+import org.graphstream.boids.forces.Morton;
 import org.graphstream.stream.ElementSink;
-import org.graphstream.stream.GraphReplay;
 import org.miv.pherd.ParticleBox;
 import org.miv.pherd.geom.Point3;
 import org.miv.pherd.ntree.Anchor;
+import org.miv.pherd.ntree.Cell;
 import org.miv.pherd.ntree.CellSpace;
 import org.miv.pherd.ntree.OctreeCellSpace;
 import org.miv.pherd.ntree.QuadtreeCellSpace;
@@ -53,26 +57,66 @@ public class NTreeForcesFactory implements BoidForcesFactory, ElementSink {
 
 	protected boolean is3D;
 
+	/**
+	 * Number of particles in a cell above which the cell is split.
+	 */
+	public static final int MAX_PARTICLES_PER_CELL = 10;
+
 	public NTreeForcesFactory(BoidGraph ctx) {
 		this(ctx, false);
 	}
 
 	public NTreeForcesFactory(BoidGraph ctx, boolean is3D) {
-		double area = ctx.getArea();
-		int maxParticlesPerCell = 10;
-
 		this.is3D = is3D;
+		this.ctx = ctx;
+		this.space = createSpace();
+		this.pbox = new ParticleBox(MAX_PARTICLES_PER_CELL, space,
+				new BoidCellData());
+	}
+
+	/**
+	 * Create a cell space covering the current area of the simulation.
+	 * 
+	 * @return A quadtree or octree space.
+	 */
+	protected CellSpace createSpace() {
+		double area = ctx.getArea();
 
 		if (is3D)
-			this.space = new OctreeCellSpace(new Anchor(-area, -area, -area),
+			return new OctreeCellSpace(new Anchor(-area, -area, -area),
 					new Anchor(area, area, area));
 		else
-			this.space = new QuadtreeCellSpace(new Anchor(-area, -area, 0),
+			return new QuadtreeCellSpace(new Anchor(-area, -area, 0),
 					new Anchor(area, area, 0));
+	}
 
-		this.pbox = new ParticleBox(maxParticlesPerCell, space,
-				new BoidCellData());
-		this.ctx = ctx;
+	/**
+	 * The particle box where the particle of a boid lives.
+	 * 
+	 * @param b
+	 *            The boid.
+	 * @return The box of the boid.
+	 */
+	protected ParticleBox boxOf(Boid b) {
+		return pbox;
+	}
+
+	/**
+	 * Remove all the particles of all the boxes.
+	 */
+	protected void clearBoxes() {
+		pbox.removeAllParticles();
+	}
+
+	/**
+	 * The root cells to explore when searching the neighborhood of a boid.
+	 * 
+	 * @param b
+	 *            The boid looking around.
+	 * @return The roots, or null to explore the tree the boid is in.
+	 */
+	protected Cell[] getQueryRoots(Boid b) {
+		return null;
 	}
 
 	/*
@@ -81,11 +125,12 @@ public class NTreeForcesFactory implements BoidForcesFactory, ElementSink {
 	 * @see org.graphstream.boids.BoidForcesFactory#init()
 	 */
 	public void init() {
-		GraphReplay replay = new GraphReplay("replay");
-		replay.addElementSink(this);
-		replay.replay(ctx);
-		replay.removeElementSink(this);
+		ArrayList<Boid> boids = new ArrayList<Boid>(ctx.getNodeCount());
 
+		for (Boid b : ctx.<Boid> getEachNode())
+			boids.add(b);
+
+		boidsAdded(boids);
 		ctx.addElementSink(this);
 	}
 
@@ -99,10 +144,81 @@ public class NTreeForcesFactory implements BoidForcesFactory, ElementSink {
 	public BoidForces createNewForces(Boid b) {
 		BoidParticle p = new BoidParticle(ctx, b);
 		NTreeForces f = is3D ? new NTreeForces3D(p) : new NTreeForces(p);
+		f.factory = this;
 
 		return f;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#recycleForces(org.graphstream
+	 * .boids.Boid, org.graphstream.boids.BoidForces)
+	 */
+	public BoidForces recycleForces(Boid b, BoidForces forces) {
+		if (!(forces instanceof NTreeForces)
+				|| (forces instanceof NTreeForces3D) != is3D)
+			return createNewForces(b);
+
+		NTreeForces f = (NTreeForces) forces;
+		f.factory = this;
+		f.p.randomPosition(ctx);
+		f.reset();
+
+		return f;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#boidsAdded(java.util.Collection)
+	 */
+	public void boidsAdded(Collection<Boid> boids) {
+		//
+		// Inserting particles in Morton order fills the tree region by
+		// region, so that cells are split while they are still small and
+		// recently used.
+		//
+
+		if (boids.size() > 1)
+			boids = Morton.sort(boids, ctx.getLowAnchor(),
+					ctx.getHighAnchor(), is3D);
+
+		for (Boid b : boids)
+			boxOf(b).addParticle(((NTreeForces) b.getForces()).p);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidForcesFactory#boidsRemoved(java.util.Collection
+	 * )
+	 */
+	public void boidsRemoved(Collection<Boid> boids) {
+		//
+		// When most particles go away, rebuilding the tree with the remaining
+		// ones is cheaper than removing them one by one, each removal
+		// possibly merging cells. Boids added in the same batch are left to
+		// boidsAdded(), else they would be inserted twice.
+		//
+
+		if (boids.size() > ctx.getNodeCount()) {
+			clearBoxes();
+
+			for (Boid b : ctx.<Boid> getEachNode()) {
+				if (!ctx.isPendingAdd(b))
+					boxOf(b).addParticle(((NTreeForces) b.getForces()).p);
+			}
+		} else {
+			for (Boid b : boids)
+				boxOf(b).removeParticle(
+						((NTreeForces) b.getForces()).p.getId());
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -129,7 +245,7 @@ public class NTreeForcesFactory implements BoidForcesFactory, ElementSink {
 	 */
 	public void end() {
 		ctx.removeElementSink(this);
-		pbox.removeAllParticles();
+		clearBoxes();
 	}
 
 	/*
@@ -158,7 +274,7 @@ public class NTreeForcesFactory implements BoidForcesFactory, ElementSink {
 	 * long)
 	 */
 	public void graphCleared(String sourceId, long timeId) {
-		pbox.removeAllParticles();
+		clearBoxes();
 	}
 
 	/*
@@ -168,8 +284,11 @@ public class NTreeForcesFactory implements BoidForcesFactory, ElementSink {
 	 * java.lang.String)
 	 */
 	public void nodeAdded(String sourceId, long timeId, String nodeId) {
-		Boid b = ctx.getNode(nodeId);
-		pbox.addParticle(((NTreeForces) b.getForces()).p);
+		if (ctx.isBatching())
+			return;
+
+		Boid b = ctx.getBoid(nodeId);
+		boxOf(b).addParticle(((NTreeForces) b.getForces()).p);
 	}
 
 	/*
@@ -179,8 +298,11 @@ public class NTreeForcesFactory implements BoidForcesFactory, ElementSink {
 	 * long, java.lang.String)
 	 */
 	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
-		Boid b = ctx.getNode(nodeId);
-		pbox.removeParticle(((NTreeForces) b.getForces()).p.getId());
+		if (ctx.isBatching())
+			return;
+
+		Boid b = ctx.getBoid(nodeId);
+		boxOf(b).removeParticle(((NTreeForces) b.getForces()).p.getId());
 	}
 
 	/*
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.forces.ntree;
+
+import java.util.ArrayList;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.SpeciesInteractions;
+import org.miv.pherd.ParticleBox;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.ntree.Cell;
+import org.miv.pherd.ntree.CellSpace;
+
+/**
+ * A n-tree forces system that keeps one tree per species.
+ * 
+ * <p>
+ * When several species share a simulation, a boid usually only cares about a
+ * few of them. With one tree per species, a neighborhood query only explores
+ * the trees of the species the {@link SpeciesInteractions} matrix makes
+ * visible to the boid, and each tree only splits according to the density of
+ * its own species instead of the density of the whole population.
+ * </p>
+ * 
+ * <p>
+ * The forces of all the boids are computed before any tree moves its
+ * particles, so that every boid sees the positions of the previous step
+ * whatever the tree it is in.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class SpeciesNTreeForcesFactory extends NTreeForcesFactory {
+	/**
+	 * One box per species handle, created when the first boid of the species
+	 * arrives.
+	 */
+	protected ParticleBox[] boxes = new ParticleBox[0];
+
+	/**
+	 * The spaces of the boxes, to resize them.
+	 */
+	protected CellSpace[] spaces = new CellSpace[0];
+
+	/**
+	 * For each observer species handle, the roots of the trees to explore.
+	 */
+	protected Cell[][] roots;
+
+	/**
+	 * The interaction table the roots were computed from.
+	 */
+	protected double[] rootsTable;
+
+	public SpeciesNTreeForcesFactory(BoidGraph ctx) {
+		this(ctx, false);
+	}
+
+	public SpeciesNTreeForcesFactory(BoidGraph ctx, boolean is3D) {
+		super(ctx, is3D);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.ntree.NTreeForcesFactory#boxOf(org.graphstream
+	 * .boids.Boid)
+	 */
+	@Override
+	protected ParticleBox boxOf(Boid b) {
+		int h = b.getSpecies().getHandle();
+
+		if (h >= boxes.length) {
+			int n = Math.max(h + 1, boxes.length * 2);
+			ParticleBox[] nb = new ParticleBox[n];
+			CellSpace[] ns = new CellSpace[n];
+
+			System.arraycopy(boxes, 0, nb, 0, boxes.length);
+			System.arraycopy(spaces, 0, ns, 0, spaces.length);
+
+			boxes = nb;
+			spaces = ns;
+		}
+
+		if (boxes[h] == null) {
+			spaces[h] = createSpace();
+			boxes[h] = new ParticleBox(MAX_PARTICLES_PER_CELL, spaces[h],
+					new BoidCellData());
+			roots = null;
+		}
+
+		return boxes[h];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.ntree.NTreeForcesFactory#clearBoxes()
+	 */
+	@Override
+	protected void clearBoxes() {
+		for (int i = 0; i < boxes.length; i++) {
+			if (boxes[i] != null)
+				boxes[i].removeAllParticles();
+		}
+
+		roots = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.ntree.NTreeForcesFactory#getQueryRoots(org
+	 * .graphstream.boids.Boid)
+	 */
+	@Override
+	protected Cell[] getQueryRoots(Boid b) {
+		SpeciesInteractions matrix = ctx.getInteractions();
+		double[] table = matrix.getTable();
+
+		if (roots == null || table != rootsTable) {
+			int n = matrix.getSize();
+			ArrayList<Cell> r = new ArrayList<Cell>();
+
+			roots = new Cell[n][];
+			rootsTable = table;
+
+			for (int a = 0; a < n; a++) {
+				r.clear();
+
+				for (int o = 0; o < n && o < boxes.length; o++) {
+					if (boxes[o] != null && matrix.sees(a, o))
+						r.add(boxes[o].getNTree().getRootCell());
+				}
+
+				roots[a] = r.toArray(new Cell[r.size()]);
+			}
+		}
+
+		int h = b.getSpecies().getHandle();
+
+		if (h >= roots.length)
+			return null;
+
+		return roots[h];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.forces.ntree.NTreeForcesFactory#step()
+	 */
+	@Override
+	public void step() {
+		//
+		// Compute everything first, then let each box move its particles.
+		// Stepping the boxes one after the other directly would show the
+		// boids of the last boxes the new positions of the first ones.
+		//
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			NTreeForces f = (NTreeForces) b.getForces();
+
+			f.compute();
+			f.p.computed = true;
+		}
+
+		for (int i = 0; i < boxes.length; i++) {
+			if (boxes[i] != null)
+				boxes[i].step();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.forces.ntree.NTreeForcesFactory#resize(org.miv.pherd
+	 * .geom.Point3, org.miv.pherd.geom.Point3)
+	 */
+	@Override
+	public void resize(Point3 low, Point3 high) {
+		super.resize(low, high);
+
+		for (int i = 0; i < spaces.length; i++) {
+			if (spaces[i] != null)
+				spaces[i].resize(low, high);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.ring;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of a frame ring file.
+ * 
+ * <p>
+ * A frame ring is a file mapped in memory by a {@link FrameRingPublisher} in
+ * the simulation process and by any number of {@link FrameRingReader} in other
+ * processes. It is made of a header followed by a fixed number of slots, each
+ * slot containing one frame, that is the state of all the boids at a given
+ * step. Frames are written in the slots in turn, the oldest frame being
+ * overwritten by the new one.
+ * </p>
+ * 
+ * <p>
+ * All values are little endian. The header is:
+ * </p>
+ * 
+ * <pre>
+ * offset  type  content
+ *      0  int   magic number "GSBR"
+ *      4  int   format version
+ *      8  int   number of slots
+ *     12  int   size of a slot in bytes
+ *     16  int   maximum number of boids in a frame
+ *     20  int   size of a boid record in bytes
+ *     24  long  number of the last complete frame, -1 if none
+ * </pre>
+ * 
+ * <p>
+ * Frame number n is stored in slot n modulo the number of slots. A slot is:
+ * </p>
+ * 
+ * <pre>
+ * offset  type    content
+ *      0  long    sequence, odd while the slot is written
+ *      8  long    frame number
+ *     16  double  simulation step
+ *     24  int     number of boid records in the frame
+ *     28  int     number of boids in the simulation, can be greater if the
+ *                 frame was truncated
+ *     32          boid records
+ * </pre>
+ * 
+ * <p>
+ * A boid record is the int handle of the boid, the int handle of its species
+ * (see {@link org.graphstream.boids.Boid#getHandle()} and
+ * {@link org.graphstream.boids.BoidSpecies#getHandle()}), then its position
+ * and direction as six floats.
+ * </p>
+ * 
+ * <p>
+ * The sequence of a slot works as a seqlock: the publisher increments it
+ * before and after writing the slot. A reader reads the sequence, then the
+ * frame, then the sequence again. The frame is consistent if both values are
+ * equal and even.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class FrameRing {
+	/**
+	 * Magic number of a frame ring file ("GSBR").
+	 */
+	public static final int MAGIC = 0x47534252;
+
+	/**
+	 * Version of the layout.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Byte order of all the values.
+	 */
+	public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * Size of the file header.
+	 */
+	public static final int HEADER_SIZE = 64;
+
+	/**
+	 * Size of the slot header.
+	 */
+	public static final int SLOT_HEADER_SIZE = 32;
+
+	/**
+	 * Size of a boid record.
+	 */
+	public static final int RECORD_SIZE = 32;
+
+	// Header offsets.
+
+	public static final int MAGIC_OFFSET = 0;
+	public static final int VERSION_OFFSET = 4;
+	public static final int SLOT_COUNT_OFFSET = 8;
+	public static final int SLOT_SIZE_OFFSET = 12;
+	public static final int CAPACITY_OFFSET = 16;
+	public static final int RECORD_SIZE_OFFSET = 20;
+	public static final int LATEST_OFFSET = 24;
+
+	// Slot offsets.
+
+	public static final int SEQUENCE_OFFSET = 0;
+	public static final int FRAME_OFFSET = 8;
+	public static final int STEP_OFFSET = 16;
+	public static final int COUNT_OFFSET = 24;
+	public static final int TOTAL_OFFSET = 28;
+
+	// Record offsets.
+
+	public static final int INDEX_OFFSET = 0;
+	public static final int SPECIES_OFFSET = 4;
+	public static final int X_OFFSET = 8;
+	public static final int Y_OFFSET = 12;
+	public static final int Z_OFFSET = 16;
+	public static final int DX_OFFSET = 20;
+	public static final int DY_OFFSET = 24;
+	public static final int DZ_OFFSET = 28;
+
+	/**
+	 * Size of a slot able to contain the given number of boids.
+	 */
+	public static int slotSize(int capacity) {
+		return SLOT_HEADER_SIZE + capacity * RECORD_SIZE;
+	}
+
+	/**
+	 * Size of a whole frame ring file.
+	 */
+	public static long fileSize(int slots, int capacity) {
+		return HEADER_SIZE + (long) slots * slotSize(capacity);
+	}
+
+	/**
+	 * Used to order memory accesses around the slot sequence, see
+	 * {@link #fence()}.
+	 */
+	private static volatile int barrier;
+
+	/**
+	 * Memory barrier. Java 7 gives no way to order accesses to a mapped
+	 * buffer: the memory model only orders volatile accesses and the plain
+	 * accesses they synchronize, and says nothing about a buffer shared with
+	 * another process. This relies on HotSpot emitting a full barrier for a
+	 * volatile store (lock-prefixed instruction on x86). The ordering holds on
+	 * x86, but is not verified on weaker memory models such as ARM or POWER.
+	 */
+	static void fence() {
+		barrier = barrier + 1;
+	}
+}
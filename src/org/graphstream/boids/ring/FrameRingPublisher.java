@@ -0,0 +1,241 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.ring;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidGraph;
+import org.graphstream.boids.BoidGraphListener;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Publish the state of the boids at each step in a memory mapped
+ * {@link FrameRing} file.
+ * 
+ * <p>
+ * Other processes can read the frames with a {@link FrameRingReader} without
+ * any GraphStream event or socket. The publisher never waits for readers: at
+ * each step it packs the boids in the next slot of the ring, overwriting the
+ * oldest frame, and readers that are too slow simply miss frames.
+ * </p>
+ * 
+ * <p>
+ * Frames are written when the graph signals a step, that is before the boids
+ * are moved for this step.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class FrameRingPublisher implements BoidGraphListener {
+	/**
+	 * The published simulation.
+	 */
+	protected BoidGraph ctx;
+
+	/**
+	 * The mapped file.
+	 */
+	protected RandomAccessFile file;
+
+	/**
+	 * The mapping of the whole file.
+	 */
+	protected MappedByteBuffer buffer;
+
+	/**
+	 * Number of slots.
+	 */
+	protected int slots;
+
+	/**
+	 * Maximum number of boids in a frame.
+	 */
+	protected int capacity;
+
+	/**
+	 * Size of a slot.
+	 */
+	protected int slotSize;
+
+	/**
+	 * Number of the next frame.
+	 */
+	protected long frame;
+
+	/**
+	 * Create the ring file and start publishing the frames of the given
+	 * simulation.
+	 * 
+	 * @param ctx
+	 *            The simulation.
+	 * @param path
+	 *            Path of the ring file, created or overwritten.
+	 * @param slots
+	 *            Number of frames kept in the ring.
+	 * @param capacity
+	 *            Maximum number of boids in a frame. Boids over this count are
+	 *            not published.
+	 * @throws IOException
+	 *             if the file cannot be created or mapped.
+	 */
+	public FrameRingPublisher(BoidGraph ctx, String path, int slots,
+			int capacity) throws IOException {
+		if (slots <= 0 || capacity <= 0)
+			throw new IllegalArgumentException(
+					"slots and capacity must be positive");
+
+		long size = FrameRing.fileSize(slots, capacity);
+
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("frame ring too large");
+
+		this.ctx = ctx;
+		this.slots = slots;
+		this.capacity = capacity;
+		this.slotSize = FrameRing.slotSize(capacity);
+		this.frame = 0;
+
+		new File(path).delete();
+
+		file = new RandomAccessFile(path, "rw");
+		file.setLength(size);
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+				size);
+		buffer.order(FrameRing.ORDER);
+
+		buffer.putInt(FrameRing.SLOT_COUNT_OFFSET, slots);
+		buffer.putInt(FrameRing.SLOT_SIZE_OFFSET, slotSize);
+		buffer.putInt(FrameRing.CAPACITY_OFFSET, capacity);
+		buffer.putInt(FrameRing.RECORD_SIZE_OFFSET, FrameRing.RECORD_SIZE);
+		buffer.putLong(FrameRing.LATEST_OFFSET, -1);
+		buffer.putInt(FrameRing.VERSION_OFFSET, FrameRing.VERSION);
+		FrameRing.fence();
+		buffer.putInt(FrameRing.MAGIC_OFFSET, FrameRing.MAGIC);
+
+		ctx.addBoidGraphListener(this);
+	}
+
+	/**
+	 * Write the current state of the boids as a new frame.
+	 * 
+	 * @param time
+	 *            The simulation step.
+	 */
+	public void publish(double time) {
+		int base = FrameRing.HEADER_SIZE + (int) (frame % slots) * slotSize;
+		long seq = buffer.getLong(base + FrameRing.SEQUENCE_OFFSET);
+		int total = ctx.getNodeCount();
+		int count = Math.min(total, capacity);
+		int record = base + FrameRing.SLOT_HEADER_SIZE;
+		int n = 0;
+
+		buffer.putLong(base + FrameRing.SEQUENCE_OFFSET, seq + 1);
+		FrameRing.fence();
+
+		buffer.putLong(base + FrameRing.FRAME_OFFSET, frame);
+		buffer.putDouble(base + FrameRing.STEP_OFFSET, time);
+		buffer.putInt(base + FrameRing.COUNT_OFFSET, count);
+		buffer.putInt(base + FrameRing.TOTAL_OFFSET, total);
+
+		for (Boid b : ctx.<Boid> getEachNode()) {
+			if (n++ >= count)
+				break;
+
+			Point3 p = b.getPosition();
+			Vector3 d = b.getForces().getDirection();
+
+			buffer.putInt(record + FrameRing.INDEX_OFFSET, b.getHandle());
+			buffer.putInt(record + FrameRing.SPECIES_OFFSET, b.getSpecies()
+					.getHandle());
+			buffer.putFloat(record + FrameRing.X_OFFSET, (float) p.x);
+			buffer.putFloat(record + FrameRing.Y_OFFSET, (float) p.y);
+			buffer.putFloat(record + FrameRing.Z_OFFSET, (float) p.z);
+			buffer.putFloat(record + FrameRing.DX_OFFSET, (float) d.data[0]);
+			buffer.putFloat(record + FrameRing.DY_OFFSET, (float) d.data[1]);
+			buffer.putFloat(record + FrameRing.DZ_OFFSET, (float) d.data[2]);
+
+			record += FrameRing.RECORD_SIZE;
+		}
+
+		FrameRing.fence();
+		buffer.putLong(base + FrameRing.SEQUENCE_OFFSET, seq + 2);
+		FrameRing.fence();
+		buffer.putLong(FrameRing.LATEST_OFFSET, frame);
+
+		frame++;
+	}
+
+	/**
+	 * Stop publishing and close the ring file. Frames already published stay
+	 * readable.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed.
+	 */
+	public void close() throws IOException {
+		ctx.removeBoidGraphListener(this);
+		buffer.force();
+		file.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.BoidGraphListener#step(double)
+	 */
+	public void step(double time) {
+		publish(time);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidGraphListener#boidAdded(org.graphstream.boids
+	 * .Boid)
+	 */
+	public void boidAdded(Boid boid) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.BoidGraphListener#boidDeleted(org.graphstream.boids
+	 * .Boid)
+	 */
+	public void boidDeleted(Boid boid) {
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.ring;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read the frames of a {@link FrameRing} file written by a
+ * {@link FrameRingPublisher}, possibly from another process.
+ * 
+ * <p>
+ * Frames are read in place from the mapped file. A {@link Frame} is a view on
+ * a slot of the ring: the publisher may overwrite it at any time, so after
+ * reading the values needed from a frame, a reader must check
+ * {@link Frame#isConsistent()} and drop what it read if it returns false.
+ * </p>
+ * 
+ * <pre>
+ * FrameRingReader reader = new FrameRingReader(&quot;boids.ring&quot;);
+ * Frame frame = reader.latest();
+ * 
+ * if (frame != null) {
+ * 	for (int i = 0; i &lt; frame.getBoidCount(); i++)
+ * 		draw(frame.getX(i), frame.getY(i));
+ * 
+ * 	if (!frame.isConsistent())
+ * 		discardDrawing();
+ * }
+ * </pre>
+ * 
+ * @author Antoine Dutot
+ */
+public class FrameRingReader {
+	/**
+	 * The mapped file.
+	 */
+	protected RandomAccessFile file;
+
+	/**
+	 * The mapping of the whole file.
+	 */
+	protected ByteBuffer buffer;
+
+	/**
+	 * Number of slots.
+	 */
+	protected int slots;
+
+	/**
+	 * Size of a slot.
+	 */
+	protected int slotSize;
+
+	/**
+	 * Size of a boid record.
+	 */
+	protected int recordSize;
+
+	/**
+	 * Open a frame ring file.
+	 * 
+	 * @param path
+	 *            Path of the ring file.
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not a frame ring.
+	 */
+	public FrameRingReader(String path) throws IOException {
+		file = new RandomAccessFile(path, "r");
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+				file.length());
+		buffer.order(FrameRing.ORDER);
+
+		if (buffer.getInt(FrameRing.MAGIC_OFFSET) != FrameRing.MAGIC)
+			throw new IOException("not a frame ring");
+
+		FrameRing.fence();
+
+		int version = buffer.getInt(FrameRing.VERSION_OFFSET);
+
+		if (version != FrameRing.VERSION)
+			throw new IOException(String.format(
+					"unsupported frame ring version %d", version));
+
+		slots = buffer.getInt(FrameRing.SLOT_COUNT_OFFSET);
+		slotSize = buffer.getInt(FrameRing.SLOT_SIZE_OFFSET);
+		recordSize = buffer.getInt(FrameRing.RECORD_SIZE_OFFSET);
+	}
+
+	/**
+	 * Number of frames kept in the ring.
+	 */
+	public int getSlotCount() {
+		return slots;
+	}
+
+	/**
+	 * Number of the last complete frame.
+	 * 
+	 * @return The frame number, or -1 if no frame was published yet.
+	 */
+	public long getLatestFrame() {
+		FrameRing.fence();
+		return buffer.getLong(FrameRing.LATEST_OFFSET);
+	}
+
+	/**
+	 * The last complete frame.
+	 * 
+	 * @return A view on the frame, or null if no frame is available.
+	 */
+	public Frame latest() {
+		long n = getLatestFrame();
+		return n < 0 ? null : frame(n);
+	}
+
+	/**
+	 * A given frame. Only the last {@link #getSlotCount()} frames are kept.
+	 * 
+	 * @param n
+	 *            The frame number.
+	 * @return A view on the frame, or null if the frame is not in the ring
+	 *         (not yet published, overwritten or being written).
+	 */
+	public Frame frame(long n) {
+		if (n < 0)
+			return null;
+
+		int base = FrameRing.HEADER_SIZE + (int) (n % slots) * slotSize;
+		long seq = buffer.getLong(base + FrameRing.SEQUENCE_OFFSET);
+
+		FrameRing.fence();
+
+		if ((seq & 1) != 0
+				|| buffer.getLong(base + FrameRing.FRAME_OFFSET) != n)
+			return null;
+
+		Frame frame = new Frame(base, seq);
+		return frame.isConsistent() ? frame : null;
+	}
+
+	/**
+	 * Close the ring file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed.
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * View on a frame of the ring.
+	 */
+	public class Frame {
+		/**
+		 * Offset of the slot.
+		 */
+		protected final int base;
+
+		/**
+		 * Sequence of the slot when the view was created.
+		 */
+		protected final long sequence;
+
+		protected Frame(int base, long sequence) {
+			this.base = base;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * True if the frame was not overwritten since this view was created.
+		 * Values read before a call returning true are valid.
+		 */
+		public boolean isConsistent() {
+			FrameRing.fence();
+			return buffer.getLong(base + FrameRing.SEQUENCE_OFFSET) == sequence;
+		}
+
+		/**
+		 * Number of this frame.
+		 */
+		public long getFrameNumber() {
+			return buffer.getLong(base + FrameRing.FRAME_OFFSET);
+		}
+
+		/**
+		 * Simulation step of this frame.
+		 */
+		public double getStep() {
+			return buffer.getDouble(base + FrameRing.STEP_OFFSET);
+		}
+
+		/**
+		 * Number of boids in this frame.
+		 */
+		public int getBoidCount() {
+			return buffer.getInt(base + FrameRing.COUNT_OFFSET);
+		}
+
+		/**
+		 * Number of boids in the simulation, greater than
+		 * {@link #getBoidCount()} if the frame was truncated.
+		 */
+		public int getTotalBoidCount() {
+			return buffer.getInt(base + FrameRing.TOTAL_OFFSET);
+		}
+
+		public int getHandle(int i) {
+			return buffer.getInt(record(i) + FrameRing.INDEX_OFFSET);
+		}
+
+		public int getSpecies(int i) {
+			return buffer.getInt(record(i) + FrameRing.SPECIES_OFFSET);
+		}
+
+		public float getX(int i) {
+			return buffer.getFloat(record(i) + FrameRing.X_OFFSET);
+		}
+
+		public float getY(int i) {
+			return buffer.getFloat(record(i) + FrameRing.Y_OFFSET);
+		}
+
+		public float getZ(int i) {
+			return buffer.getFloat(record(i) + FrameRing.Z_OFFSET);
+		}
+
+		public float getDirectionX(int i) {
+			return buffer.getFloat(record(i) + FrameRing.DX_OFFSET);
+		}
+
+		public float getDirectionY(int i) {
+			return buffer.getFloat(record(i) + FrameRing.DY_OFFSET);
+		}
+
+		public float getDirectionZ(int i) {
+			return buffer.getFloat(record(i) + FrameRing.DZ_OFFSET);
+		}
+
+		/**
+		 * Offset of the i-th boid record.
+		 */
+		protected int record(int i) {
+			return base + FrameRing.SLOT_HEADER_SIZE + i * recordSize;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.rules;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.SpeciesInteractions;
+import org.graphstream.boids.SpeciesParameters;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Steer along the mean direction of the boids in the alignment zone, scaled
+ * by the direction factor of the species.
+ * 
+ * @author Antoine Dutot
+ */
+public class AlignmentRule extends SteeringRule {
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.graphstream.boids.rules.SteeringRule#getStateSize()
+	 */
+	@Override
+	public int getStateSize() {
+		return 4;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.rules.SteeringRule#neighbor(org.graphstream.boids
+	 * .BoidForces, org.graphstream.boids.Boid, org.miv.pherd.geom.Vector3,
+	 * double, double[])
+	 */
+	@Override
+	public void neighbor(BoidForces forces, Boid b, Vector3 rep, double len,
+			double[] state) {
+		if (len > forces.getBoid().getSpecies().getParameters().alignmentZone)
+			return;
+
+		double align = forces.getCoefficient(b, SpeciesInteractions.ALIGNMENT);
+
+		if (align != 0) {
+			double[] d = b.getForces().getDirection().data;
+
+			state[offset] += d[0] * align;
+			state[offset + 1] += d[1] * align;
+			state[offset + 2] += d[2] * align;
+			state[offset + 3] += align;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.rules.SteeringRule#steer(org.graphstream.boids.
+	 * BoidForces, double[], org.miv.pherd.geom.Vector3)
+	 */
+	@Override
+	public void steer(BoidForces forces, double[] state, Vector3 steering) {
+		double w = state[offset + 3];
+
+		if (w > 0) {
+			SpeciesParameters params = forces.getBoid().getSpecies()
+					.getParameters();
+			double s = params.directionFactor * weight / w;
+
+			steering.data[0] += state[offset] * s;
+			steering.data[1] += state[offset + 1] * s;
+			steering.data[2] += state[offset + 2] * s;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.rules;
+
+import java.util.ArrayList;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * The rules of a species, compiled once, and evaluated together.
+ * 
+ * <p>
+ * A pipeline is described by a comma separated list of rules, each being
+ * either a built-in rule name or the class name of a custom
+ * {@link SteeringRule}, optionally followed by a colon and a weight:
+ * 
+ * <pre>
+ * separation, alignment, cohesion, walls:0.5, org.example.MyRule:2
+ * </pre>
+ * 
+ * The built-in rules are "separation", "alignment", "cohesion" and "walls".
+ * </p>
+ * 
+ * <p>
+ * The rules are stored in a flat array and their states are packed in a
+ * single array per boid, so that each visible boid is given to all the rules
+ * in one loop, and adding a rule does not add a pass over the neighbors.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public class SteeringPipeline {
+	/**
+	 * The rules, in order.
+	 */
+	protected final SteeringRule[] rules;
+
+	/**
+	 * Size of the state of all the rules.
+	 */
+	protected final int stateSize;
+
+	/**
+	 * The description the pipeline was compiled from.
+	 */
+	protected final String description;
+
+	/**
+	 * Compile a list of rules.
+	 * 
+	 * @param description
+	 *            How the rules were described.
+	 * @param rules
+	 *            The rules.
+	 */
+	public SteeringPipeline(String description, SteeringRule... rules) {
+		int size = 0;
+
+		for (SteeringRule rule : rules) {
+			rule.offset = size;
+			size += rule.getStateSize();
+		}
+
+		this.rules = rules.clone();
+		this.stateSize = size;
+		this.description = description;
+	}
+
+	/**
+	 * Compile a description of rules.
+	 * 
+	 * @param description
+	 *            The rules, see the class description.
+	 * @return The pipeline.
+	 * @throws IllegalArgumentException
+	 *             If a rule is unknown or its weight is not a number.
+	 */
+	public static SteeringPipeline parse(String description) {
+		ArrayList<SteeringRule> rules = new ArrayList<SteeringRule>();
+
+		for (String item : description.split(",")) {
+			item = item.trim();
+
+			if (item.length() == 0)
+				continue;
+
+			int colon = item.indexOf(':');
+			String name = colon < 0 ? item : item.substring(0, colon).trim();
+			SteeringRule rule = createRule(name);
+
+			if (colon >= 0)
+				rule.setWeight(Double.parseDouble(item.substring(colon + 1)
+						.trim()));
+
+			rules.add(rule);
+		}
+
+		return new SteeringPipeline(description.trim(),
+				rules.toArray(new SteeringRule[rules.size()]));
+	}
+
+	/**
+	 * Create a rule from its name.
+	 * 
+	 * @param name
+	 *            A built-in rule name or a class name.
+	 * @return A new rule.
+	 */
+	protected static SteeringRule createRule(String name) {
+		if (name.equals("separation"))
+			return new SeparationRule();
+		if (name.equals("alignment"))
+			return new AlignmentRule();
+		if (name.equals("cohesion"))
+			return new CohesionRule();
+		if (name.equals("walls"))
+			return new WallAvoidanceRule();
+
+		try {
+			return (SteeringRule) Class.forName(name).newInstance();
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException(String.format(
+					"unknown steering rule '%s'", name));
+		} catch (ClassCastException e) {
+			throw new IllegalArgumentException(String.format(
+					"'%s' is not a steering rule", name));
+		} catch (InstantiationException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Size of the state of all the rules, for one boid.
+	 * 
+	 * @return The size of the state.
+	 */
+	public int getStateSize() {
+		return stateSize;
+	}
+
+	/**
+	 * Number of rules.
+	 * 
+	 * @return The number of rules.
+	 */
+	public int getRuleCount() {
+		return rules.length;
+	}
+
+	/**
+	 * The i-th rule.
+	 * 
+	 * @param i
+	 *            Index of the rule.
+	 * @return The rule.
+	 */
+	public SteeringRule getRule(int i) {
+		return rules[i];
+	}
+
+	/**
+	 * Give a visible boid to all the rules.
+	 * 
+	 * @param forces
+	 *            The forces of the boid looking around.
+	 * @param b
+	 *            The boid it sees.
+	 * @param rep
+	 *            The vector from b to the boid.
+	 * @param len
+	 *            The length of rep.
+	 * @param state
+	 *            The state of the boid.
+	 */
+	public void neighbor(BoidForces forces, Boid b, Vector3 rep, double len,
+			double[] state) {
+		SteeringRule[] rules = this.rules;
+
+		for (int i = 0; i < rules.length; i++)
+			rules[i].neighbor(forces, b, rep, len, state);
+	}
+
+	/**
+	 * Sum the steering of all the rules.
+	 * 
+	 * @param forces
+	 *            The forces of the boid.
+	 * @param state
+	 *            The state of the boid.
+	 * @param steering
+	 *            Where to store the steering.
+	 */
+	public void steer(BoidForces forces, double[] state, Vector3 steering) {
+		SteeringRule[] rules = this.rules;
+
+		steering.fill(0);
+
+		for (int i = 0; i < rules.length; i++)
+			rules[i].steer(forces, state, steering);
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.rules;
+
+import org.graphstream.boids.Boid;
+import org.graphstream.boids.BoidForces;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * One rule of the steering of a species.
+ * 
+ * <p>
+ * Rules do not search boids themselves. The forces of a boid offer each
+ * visible boid to all the rules of the species in a single loop, see
+ * {@link SteeringPipeline}, then ask each rule for its steering. Rules are
+ * shared by all the boids of a species: what a rule accumulates for a boid
+ * goes in the state array given to it, at the offset of the rule, never in
+ * the rule itself, since the neighbors of several boids may be integrated at
+ * the same time.
+ * </p>
+ * 
+ * <p>
+ * Custom rules are any subclass with a public constructor without arguments,
+ * named by their class in the rules of the species.
+ * </p>
+ * 
+ * @author Antoine Dutot
+ */
+public abstract class SteeringRule {
+	/**
+	 * Importance of the steering of this rule.
+	 */
+	protected double weight = 1;
+
+	/**
+	 * Start of the state of this rule in the state array of a boid, set by
+	 * the pipeline.
+	 */
+	protected int offset;
+
+	/**
+	 * Number of values this rule accumulates for each boid. They are set to
+	 * zero before the neighbors of a boid are integrated.
+	 * 
+	 * @return The size of the state, zero by default.
+	 */
+	public int getStateSize() {
+		return 0;
+	}
+
+	/**
+	 * Importance of the steering of this rule.
+	 * 
+	 * @return The weight.
+	 */
+	public double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Change the importance of the steering of this rule.
+	 * 
+	 * @param weight
+	 *            The weight.
+	 */
+	public void setWeight(double weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * Integrate a visible boid. Does nothing by default.
+	 * 
+	 * @param forces
+	 *            The forces of the boid looking around.
+	 * @param b
+	 *            The boid it sees.
+	 * @param rep
+	 *            The vector from b to the boid, not to be modified.
+	 * @param len
+	 *            The length of rep.
+	 * @param state
+	 *            The state of the boid.
+	 */
+	public void neighbor(BoidForces forces, Boid b, Vector3 rep, double len,
+			double[] state) {
+	}
+
+	/**
+	 * Add the steering of this rule, weighted, once all the visible boids are
+	 * integrated.
+	 * 
+	 * @param forces
+	 *            The forces of the boid.
+	 * @param state
+	 *            The state of the boid.
+	 * @param steering
+	 *            The steering to add to.
+	 */
+	public abstract void steer(BoidForces forces, double[] state,
+			Vector3 steering);
+}
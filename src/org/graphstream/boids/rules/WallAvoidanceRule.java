@@ -0,0 +1,82 @@
+/*
+ * Copyright 2006 - 2012
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of gs-boids <http://graphstream-project.org>.
+ * 
+ * gs-boids is a library whose purpose is to provide a boid behavior to a set of
+ * particles.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.boids.rules;
+
+import org.graphstream.boids.BoidForces;
+import org.graphstream.boids.BoidGraph;
+import org.miv.pherd.geom.Point3;
+import org.miv.pherd.geom.Vector3;
+
+/**
+ * Steer away from the walls of the space before reaching them. The push
+ * grows linearly from zero, at a view zone of a wall, to the weight of the
+ * rule, on the wall. The walls still bounce the boids that reach them.
+ * 
+ * @author Antoine Dutot
+ */
+public class WallAvoidanceRule extends SteeringRule {
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.graphstream.boids.rules.SteeringRule#steer(org.graphstream.boids.
+	 * BoidForces, double[], org.miv.pherd.geom.Vector3)
+	 */
+	@Override
+	public void steer(BoidForces forces, double[] state, Vector3 steering) {
+		BoidGraph ctx = (BoidGraph) forces.getBoid().getGraph();
+		Point3 lo = ctx.getLowAnchor();
+		Point3 hi = ctx.getHighAnchor();
+		Point3 p = forces.getBoid().getPosition();
+		double v = forces.getBoid().getSpecies().getParameters().viewZone;
+
+		if (v <= 0)
+			return;
+
+		steering.data[0] += push(p.x - lo.x, hi.x - p.x, v);
+		steering.data[1] += push(p.y - lo.y, hi.y - p.y, v);
+
+		if (forces.is3D())
+			steering.data[2] += push(p.z - lo.z, hi.z - p.z, v);
+	}
+
+	/**
+	 * Push along one axis, given the distances to the low and high walls.
+	 */
+	protected double push(double toLow, double toHigh, double v) {
+		double push = 0;
+
+		if (toLow < v)
+			push += weight * (v - Math.max(toLow, 0)) / v;
+		if (toHigh < v)
+			push -= weight * (v - Math.max(toHigh, 0)) / v;
+
+		return push;
+	}
+}